@@ -0,0 +1,103 @@
+package jenkins.plugins.itemstorage;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import jenkins.util.SystemProperties;
+
+/**
+ * Runs the parts of a transfer concurrently on a thread pool shared by all transfers of the JVM, which is bounded by
+ * {@code jenkins.plugins.itemstorage.ConcurrentTasks.threads}. The calling thread runs the parts that no pool thread
+ * has picked up yet itself, so that nested transfers, like the ranges of a shard, never wait for a thread held by
+ * the transfer they are part of.
+ */
+public final class ConcurrentTasks {
+
+    /**
+     * Maximum number of threads shared by all transfers.
+     */
+    static int THREADS = SystemProperties.getInteger(ConcurrentTasks.class.getName() + ".threads", 16);
+
+    private ConcurrentTasks() {}
+
+    /**
+     * Runs the task for each index from 0 to count concurrently and waits until all of them are complete. If one of
+     * them fails, the others are interrupted.
+     *
+     * @param count The number of times to run the task
+     * @param task  The task to run for each index
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void forEach(int count, Task task) throws IOException, InterruptedException {
+        if (count == 1) {
+            task.run(0);
+            return;
+        }
+
+        List<FutureTask<Void>> futures = new ArrayList<>();
+        for (int index = 0; index < count; index++) {
+            int current = index;
+            FutureTask<Void> future = new FutureTask<>(() -> {
+                task.run(current);
+                return null;
+            });
+            futures.add(future);
+            Pool.EXECUTOR.execute(future);
+        }
+
+        try {
+            for (FutureTask<Void> future : futures) {
+                // does nothing if a pool thread has already started the task
+                future.run();
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            for (FutureTask<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    public interface Task {
+
+        void run(int index) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Holds the pool, which is only created once the first transfer is split.
+     */
+    private static final class Pool {
+
+        private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+        private static ThreadPoolExecutor createExecutor() {
+            int threads = Math.max(1, THREADS);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    60,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "ConcurrentTasks"));
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+}
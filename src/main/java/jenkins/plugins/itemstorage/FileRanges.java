@@ -0,0 +1,105 @@
+package jenkins.plugins.itemstorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams over a range of a local file, backed by positional {@link FileChannel} I/O so that several ranges of the
+ * same file can be read or written concurrently.
+ */
+public final class FileRanges {
+
+    private FileRanges() {}
+
+    /**
+     * Creates or truncates the file so that it has exactly the given size.
+     */
+    public static void allocate(Path path, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (length > 0) {
+                channel.write(ByteBuffer.allocate(1), length - 1);
+            }
+        }
+    }
+
+    public static InputStream newInputStream(Path path, long offset, long length) throws IOException {
+        return new RangeInputStream(FileChannel.open(path, StandardOpenOption.READ), offset, length);
+    }
+
+    public static OutputStream newOutputStream(Path path, long offset) throws IOException {
+        return new RangeOutputStream(FileChannel.open(path, StandardOpenOption.WRITE), offset);
+    }
+
+    private static final class RangeInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+        private long remaining;
+
+        private RangeInputStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+            if (read > 0) {
+                position += read;
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static final class RangeOutputStream extends OutputStream {
+
+        private final FileChannel channel;
+        private long position;
+
+        private RangeOutputStream(FileChannel channel, long offset) {
+            this.channel = channel;
+            this.position = offset;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -32,6 +32,7 @@ import jenkins.model.GlobalConfiguration;
 import jenkins.model.Jenkins;
 import jenkins.plugins.itemstorage.local.LocalItemStorage;
 import net.sf.json.JSONObject;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.StaplerRequest2;
 
 /**
@@ -42,6 +43,7 @@ import org.kohsuke.stapler.StaplerRequest2;
 @Extension
 public class GlobalItemStorage extends GlobalConfiguration implements PersistentDescriptor {
     private ItemStorage<?> storage = new LocalItemStorage();
+    private Long maxStorageSize;
 
     public static GlobalItemStorage get() {
         return GlobalConfiguration.all().get(GlobalItemStorage.class);
@@ -56,6 +58,22 @@ public class GlobalItemStorage extends GlobalConfiguration implements Persistent
         save();
     }
 
+    /**
+     * Get the maximum size in megabytes of all caches within the storage. Least recently used caches are evicted by a
+     * background task once it is exceeded.
+     *
+     * @return The maximum size, or null if unlimited
+     */
+    public Long getMaxStorageSize() {
+        return maxStorageSize;
+    }
+
+    @DataBoundSetter
+    public void setMaxStorageSize(Long maxStorageSize) {
+        this.maxStorageSize = maxStorageSize;
+        save();
+    }
+
     @Override
     public boolean configure(StaplerRequest2 req, JSONObject json) throws FormException {
         req.bindJSON(this, json);
@@ -0,0 +1,52 @@
+package jenkins.plugins.itemstorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Implemented by {@link ObjectPath}s supporting ranged reads and writes, which allows large objects to be transferred
+ * as several concurrent streams by {@link RangedTransfer}.
+ */
+public interface RangedObjectPath {
+
+    /**
+     * Get the size of the object at this path
+     *
+     * @return The size in bytes
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    long length() throws IOException, InterruptedException;
+
+    /**
+     * Open a stream reading a range of the object at this path
+     *
+     * @param offset The offset of the first byte to read
+     * @param length The number of bytes to read
+     * @return The stream, which must be closed by the caller
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    InputStream readRange(long offset, long length) throws IOException, InterruptedException;
+
+    /**
+     * Create or truncate the object at this path so that it has the given size and can be filled by ranged writes
+     *
+     * @param length The size in bytes
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    void allocate(long length) throws IOException, InterruptedException;
+
+    /**
+     * Open a stream writing into the object at this path starting at the given offset. The object must have been
+     * allocated before.
+     *
+     * @param offset The offset of the first byte to write
+     * @return The stream, which must be closed by the caller
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    OutputStream writeRange(long offset) throws IOException, InterruptedException;
+}
@@ -0,0 +1,166 @@
+package jenkins.plugins.itemstorage;
+
+import hudson.FilePath;
+import hudson.remoting.Channel;
+import hudson.remoting.RemoteOutputStream;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.agents.ControllerToAgentFileCallable;
+import jenkins.util.SystemProperties;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Transfers large objects between a {@link RangedObjectPath} and a potentially remote
+ * {@link FilePath} by splitting them into ranges which are moved concurrently and reassembled at the target.
+ */
+public final class RangedTransfer {
+
+    /**
+     * Number of concurrent streams used to transfer a single object.
+     */
+    static int STREAMS = SystemProperties.getInteger(RangedTransfer.class.getName() + ".streams", 4);
+
+    /**
+     * Objects smaller than this size in bytes are transferred as a single stream.
+     */
+    static long MIN_SIZE = SystemProperties.getLong(RangedTransfer.class.getName() + ".minSize", 64L * 1024 * 1024);
+
+    private RangedTransfer() {}
+
+    /**
+     * Checks whether an object of the given size should be split into several ranges.
+     *
+     * @param length The size of the object in bytes
+     * @return true if so, false otherwise
+     */
+    public static boolean isWorthSplitting(long length) {
+        return STREAMS > 1 && length >= MIN_SIZE;
+    }
+
+    /**
+     * Copies the object at the source path to the target file.
+     *
+     * @param source The source object
+     * @param target The target file
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void copyTo(RangedObjectPath source, FilePath target) throws IOException, InterruptedException {
+        long length = source.length();
+        target.act(new Allocate(length));
+
+        forEachRange(length, STREAMS, range -> {
+            try (InputStream inputStream = source.readRange(range.offset(), range.length());
+                    OutputStream outputStream = target.act(new OpenRange(range.offset()))) {
+                IOUtils.copy(inputStream, outputStream);
+            }
+        });
+
+        // the writes are delivered asynchronously, so make sure they completed before the file gets used
+        VirtualChannel channel = target.getChannel();
+        if (channel instanceof Channel) {
+            ((Channel) channel).syncIO();
+        }
+    }
+
+    /**
+     * Copies the source file to the object at the target path.
+     *
+     * @param source The source file
+     * @param target The target object
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void copyFrom(FilePath source, RangedObjectPath target) throws IOException, InterruptedException {
+        long length = source.length();
+        target.allocate(length);
+
+        forEachRange(length, STREAMS, range -> {
+            try (OutputStream outputStream = target.writeRange(range.offset())) {
+                source.act(new ReadRange(range.offset(), range.length(), new RemoteOutputStream(outputStream)));
+
+                // the writes are delivered asynchronously, so make sure they completed before closing the stream
+                VirtualChannel channel = source.getChannel();
+                if (channel instanceof Channel) {
+                    ((Channel) channel).syncLocalIO();
+                }
+            }
+        });
+    }
+
+    public static List<Range> split(long length, int streams) {
+        long rangeLength = (length + streams - 1) / streams;
+
+        List<Range> ranges = new ArrayList<>();
+        for (long offset = 0; offset < length; offset += rangeLength) {
+            ranges.add(new Range(offset, Math.min(rangeLength, length - offset)));
+        }
+        return ranges;
+    }
+
+    /**
+     * Gets the number of concurrent streams that should be used to transfer an object of the given size.
+     *
+     * @param length The size of the object in bytes
+     * @return The number of streams
+     */
+    public static int getStreams(long length) {
+        return isWorthSplitting(length) ? STREAMS : 1;
+    }
+
+    /**
+     * Splits an object into ranges and runs the task for each of them concurrently on the {@link ConcurrentTasks}.
+     *
+     * @param length  The size of the object in bytes
+     * @param streams The number of ranges
+     * @param task    The task to run for each range
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void forEachRange(long length, int streams, RangeTask task) throws IOException, InterruptedException {
+        List<Range> ranges = split(length, streams);
+        ConcurrentTasks.forEach(ranges.size(), index -> task.transfer(ranges.get(index)));
+    }
+
+    public record Range(long offset, long length) {}
+
+    public interface RangeTask {
+
+        void transfer(Range range) throws IOException, InterruptedException;
+    }
+
+    private record Allocate(long length) implements ControllerToAgentFileCallable<Void> {
+
+        @Override
+        public Void invoke(File f, VirtualChannel channel) throws IOException {
+            FileRanges.allocate(f.toPath(), length);
+            return null;
+        }
+    }
+
+    private record OpenRange(long offset) implements ControllerToAgentFileCallable<OutputStream> {
+
+        @Override
+        public OutputStream invoke(File f, VirtualChannel channel) throws IOException {
+            return new RemoteOutputStream(FileRanges.newOutputStream(f.toPath(), offset));
+        }
+    }
+
+    private record ReadRange(long offset, long length, OutputStream outputStream)
+            implements ControllerToAgentFileCallable<Void> {
+
+        @Override
+        public Void invoke(File f, VirtualChannel channel) throws IOException {
+            try (InputStream inputStream = FileRanges.newInputStream(f.toPath(), offset, length);
+                    OutputStream out = outputStream) {
+                IOUtils.copy(inputStream, out);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package jenkins.plugins.itemstorage.local;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.UnprotectedRootAction;
+import hudson.remoting.VirtualChannel;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jenkins.agents.ControllerToAgentFileCallable;
+import jenkins.model.Jenkins;
+import jenkins.plugins.itemstorage.FileRanges;
+import jenkins.plugins.itemstorage.RangedTransfer;
+import jenkins.util.SystemProperties;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+
+/**
+ * Serves cache archives of the {@link LocalItemStorage} to agents over HTTP, so that restores do not compete with
+ * other traffic on the remoting channel. Every transfer is authorized by a random token which is only valid for that
+ * single archive, expires after a short time and is revoked as soon as the transfer finished.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class HttpTransferAction implements UnprotectedRootAction {
+
+    private static final Logger LOG = Logger.getLogger(HttpTransferAction.class.getName());
+
+    private static final String URL_NAME = "jobcacher-transfer";
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Number of seconds a token stays valid if it is not revoked earlier.
+     */
+    static long TOKEN_VALIDITY_SECONDS =
+            SystemProperties.getLong(HttpTransferAction.class.getName() + ".tokenValiditySeconds", 600L);
+
+    /**
+     * Number of seconds an agent waits to connect to the controller before falling back to remoting.
+     */
+    static int CONNECT_TIMEOUT_SECONDS =
+            SystemProperties.getInteger(HttpTransferAction.class.getName() + ".connectTimeoutSeconds", 30);
+
+    /**
+     * Number of seconds an agent waits for data of a transfer before falling back to remoting.
+     */
+    static int READ_TIMEOUT_SECONDS =
+            SystemProperties.getInteger(HttpTransferAction.class.getName() + ".readTimeoutSeconds", 60);
+
+    private static final Map<String, Grant> grants = new ConcurrentHashMap<>();
+
+    /**
+     * Number of bytes served since startup, used by tests to verify that transfers went over HTTP.
+     */
+    static final AtomicLong servedBytes = new AtomicLong();
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Copies the file to the target by letting the agent download it from this endpoint.
+     *
+     * @param file   The file to copy
+     * @param target The target file on the agent
+     * @return true if the file was copied, false if the transfer failed and the caller should fall back to remoting
+     * @throws InterruptedException If interrupted
+     */
+    static boolean download(File file, FilePath target) throws InterruptedException {
+        String rootUrl = Jenkins.get().getRootUrl();
+        if (rootUrl == null) {
+            LOG.fine("Jenkins root URL is not configured, cannot transfer cache over HTTP");
+            return false;
+        }
+
+        String token = grant(file);
+        try {
+            long length = file.length();
+            target.act(new Download(
+                    rootUrl + URL_NAME + "/" + token,
+                    length,
+                    RangedTransfer.getStreams(length),
+                    (int) TimeUnit.SECONDS.toMillis(CONNECT_TIMEOUT_SECONDS),
+                    (int) TimeUnit.SECONDS.toMillis(READ_TIMEOUT_SECONDS)));
+            return true;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, e, () -> "Failed to transfer " + file + " over HTTP, falling back to remoting");
+            return false;
+        } finally {
+            grants.remove(token);
+        }
+    }
+
+    static String grant(File file) {
+        long now = System.currentTimeMillis();
+        grants.values().removeIf(grant -> grant.isExpired(now));
+
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        grants.put(token, new Grant(file, now + TOKEN_VALIDITY_SECONDS * 1000));
+
+        return token;
+    }
+
+    public void doDynamic(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        String token = StringUtils.removeStart(req.getRestOfPath(), "/");
+        Grant grant = grants.get(token);
+        if (grant == null || grant.isExpired(System.currentTimeMillis()) || !grant.file().isFile()) {
+            rsp.sendError(HttpURLConnection.HTTP_NOT_FOUND);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(grant.file().toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            long end = size - 1;
+
+            String range = req.getHeader("Range");
+            if (range != null) {
+                Matcher matcher = RANGE_PATTERN.matcher(range);
+                if (!matcher.matches()) {
+                    rsp.sendError(HttpURLConnection.HTTP_BAD_REQUEST);
+                    return;
+                }
+
+                try {
+                    start = Long.parseLong(matcher.group(1));
+                    if (!matcher.group(2).isEmpty()) {
+                        end = Math.min(end, Long.parseLong(matcher.group(2)));
+                    }
+                } catch (NumberFormatException e) {
+                    // too large for any file
+                    sendRangeNotSatisfiable(rsp, size);
+                    return;
+                }
+                if (start > end) {
+                    sendRangeNotSatisfiable(rsp, size);
+                    return;
+                }
+
+                rsp.setStatus(HttpURLConnection.HTTP_PARTIAL);
+                rsp.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            }
+
+            rsp.setHeader("Accept-Ranges", "bytes");
+            rsp.setContentType("application/octet-stream");
+            rsp.setContentLengthLong(end - start + 1);
+
+            WritableByteChannel out = Channels.newChannel(rsp.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += channel.transferTo(position, end - position + 1, out);
+            }
+            servedBytes.addAndGet(end - start + 1);
+        }
+    }
+
+    private static void sendRangeNotSatisfiable(StaplerResponse2 rsp, long size) throws IOException {
+        rsp.setHeader("Content-Range", "bytes */" + size);
+        rsp.sendError(416);
+    }
+
+    private record Grant(File file, long expiresAt) {
+
+        boolean isExpired(long now) {
+            return now > expiresAt;
+        }
+    }
+
+    private record Download(String url, long length, int streams, int connectTimeout, int readTimeout)
+            implements ControllerToAgentFileCallable<Void> {
+
+        @Override
+        public Void invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+            FileRanges.allocate(f.toPath(), length);
+
+            RangedTransfer.forEachRange(length, streams, range -> {
+                HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+                connection.setConnectTimeout(connectTimeout);
+                connection.setReadTimeout(readTimeout);
+                try {
+                    long end = range.offset() + range.length() - 1;
+                    connection.setRequestProperty("Range", "bytes=" + range.offset() + "-" + end);
+                    if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                        throw new IOException("Unexpected response " + connection.getResponseCode() + " for range "
+                                + range.offset() + "-" + end);
+                    }
+
+                    try (InputStream inputStream = connection.getInputStream();
+                            OutputStream outputStream = FileRanges.newOutputStream(f.toPath(), range.offset())) {
+                        long copied = IOUtils.copyLarge(inputStream, outputStream);
+                        if (copied != range.length()) {
+                            throw new IOException("Received " + copied + " bytes instead of " + range.length()
+                                    + " for range " + range.offset() + "-" + end);
+                        }
+                    }
+                } finally {
+                    connection.disconnect();
+                }
+            });
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package jenkins.plugins.itemstorage.local;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * File operations used when both ends of a transfer are on the controller file system. Files are never modified in
+ * place, but replaced by atomically renaming a sibling temporary file, so that hard links to a previous version stay
+ * intact.
+ */
+final class LocalFiles {
+
+    private static final Logger LOG = Logger.getLogger(LocalFiles.class.getName());
+
+    static final String TEMP_FILE_PREFIX = ".";
+
+    static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private LocalFiles() {}
+
+    /**
+     * Stores the source at the target, preferring a hard link and falling back to an in-kernel copy when both are not
+     * on the same file system. Only used for sources which are not modified afterward, like freshly created archives.
+     */
+    static void link(Path source, Path target) throws IOException, InterruptedException {
+        replace(target, temp -> {
+            try {
+                Files.createLink(temp, source);
+            } catch (IOException | UnsupportedOperationException e) {
+                LOG.log(Level.FINE, e, () -> "Cannot link " + target + " to " + source + ", copying it instead");
+                transfer(source, temp);
+            }
+        });
+    }
+
+    /**
+     * Copies the source to the target with an in-kernel copy, which the file system may turn into a reflink. Never
+     * links the target to the source, so that modifying the target cannot modify the stored source.
+     */
+    static void copy(Path source, Path target) throws IOException, InterruptedException {
+        replace(target, temp -> transfer(source, temp));
+    }
+
+    /**
+     * Writes the target by passing a sibling temporary file to the writer and renaming it to the target afterward.
+     */
+    static void replace(Path target, Writer writer) throws IOException, InterruptedException {
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        Path temp = parent.resolve(TEMP_FILE_PREFIX + target.getFileName() + "." + UUID.randomUUID() + TEMP_FILE_SUFFIX);
+        try {
+            writer.write(temp);
+            move(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Records that the file has been used by setting its last access time explicitly, which also works on file systems
+     * mounted with {@code noatime}.
+     */
+    static void recordAccess(Path path) {
+        try {
+            Files.getFileAttributeView(path, BasicFileAttributeView.class)
+                    .setTimes(null, FileTime.from(Instant.now()), null);
+        } catch (IOException e) {
+            LOG.log(Level.FINE, e, () -> "Cannot record access to " + path);
+        }
+    }
+
+    /**
+     * Gets the time the file has last been used, which is the later of its last access and last modification.
+     */
+    static FileTime getLastUsed(BasicFileAttributes attributes) {
+        FileTime lastAccessTime = attributes.lastAccessTime();
+        FileTime lastModifiedTime = attributes.lastModifiedTime();
+        return lastAccessTime.compareTo(lastModifiedTime) > 0 ? lastAccessTime : lastModifiedTime;
+    }
+
+    static boolean isTempFile(Path path) {
+        String fileName = path.getFileName().toString();
+        return fileName.startsWith(TEMP_FILE_PREFIX) && fileName.endsWith(TEMP_FILE_SUFFIX);
+    }
+
+    private static void transfer(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    interface Writer {
+
+        void write(Path temp) throws IOException, InterruptedException;
+    }
+}
@@ -54,6 +54,7 @@ public class LocalItemStorage extends ItemStorage<LocalObjectPath> {
     private static final Logger LOG = Logger.getLogger(LocalItemStorage.class.getName());
 
     private String root;
+    private boolean httpTransfer;
 
     @DataBoundConstructor
     public LocalItemStorage() {}
@@ -67,9 +68,18 @@ public class LocalItemStorage extends ItemStorage<LocalObjectPath> {
         return root;
     }
 
+    @DataBoundSetter
+    public void setHttpTransfer(boolean httpTransfer) {
+        this.httpTransfer = httpTransfer;
+    }
+
+    public boolean isHttpTransfer() {
+        return httpTransfer;
+    }
+
     @Override
     public LocalObjectPath getObjectPath(Item item, String path) {
-        return new LocalObjectPath(getItemRoot(item).child(path));
+        return new LocalObjectPath(getItemRoot(item).child(path), httpTransfer);
     }
 
     @Override
@@ -80,7 +90,7 @@ public class LocalItemStorage extends ItemStorage<LocalObjectPath> {
         }
 
         FilePath branchPath = parent.child(branch);
-        return new LocalObjectPath(branchPath.child(path));
+        return new LocalObjectPath(branchPath.child(path), httpTransfer);
     }
 
     private FilePath getItemRoot(Item item) {
@@ -27,8 +27,17 @@ package jenkins.plugins.itemstorage.local;
 import hudson.FilePath;
 import hudson.model.DirectoryBrowserSupport;
 import hudson.model.Job;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import jenkins.plugins.itemstorage.FileRanges;
 import jenkins.plugins.itemstorage.ObjectPath;
+import jenkins.plugins.itemstorage.RangedObjectPath;
+import jenkins.plugins.itemstorage.RangedTransfer;
+import jenkins.plugins.jobcacher.CacheEvents;
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.StaplerResponse2;
@@ -38,27 +47,100 @@ import org.kohsuke.stapler.StaplerResponse2;
  *
  * @author Peter Hayes
  */
-public class LocalObjectPath extends ObjectPath {
+public class LocalObjectPath extends ObjectPath implements RangedObjectPath {
 
     private final FilePath file;
+    private final boolean httpTransfer;
 
     public LocalObjectPath(FilePath file) {
+        this(file, false);
+    }
+
+    public LocalObjectPath(FilePath file, boolean httpTransfer) {
         this.file = file;
+        this.httpTransfer = httpTransfer;
     }
 
     @Override
     public ObjectPath child(String path) throws IOException, InterruptedException {
-        return new LocalObjectPath(file.child(path));
+        return new LocalObjectPath(file.child(path), httpTransfer);
     }
 
     @Override
     public void copyTo(FilePath target) throws IOException, InterruptedException {
-        file.copyTo(target);
+        CacheEvents.Transfer event = new CacheEvents.Transfer();
+        event.begin();
+        transferTo(target);
+        commit(event, "download");
+    }
+
+    private void transferTo(FilePath target) throws IOException, InterruptedException {
+        LocalFiles.recordAccess(toPath());
+
+        if (!target.isRemote()) {
+            LocalFiles.copy(toPath(), toPath(target));
+            return;
+        }
+
+        if (httpTransfer && HttpTransferAction.download(toPath().toFile(), target)) {
+            return;
+        }
+
+        if (RangedTransfer.isWorthSplitting(length())) {
+            RangedTransfer.copyTo(this, target);
+        } else {
+            file.copyTo(target);
+        }
     }
 
     @Override
     public void copyFrom(FilePath source) throws IOException, InterruptedException {
-        file.copyFrom(source);
+        CacheEvents.Transfer event = new CacheEvents.Transfer();
+        event.begin();
+        if (!source.isRemote()) {
+            LocalFiles.link(toPath(source), toPath());
+        } else if (RangedTransfer.isWorthSplitting(source.length())) {
+            LocalFiles.replace(
+                    toPath(), temp -> RangedTransfer.copyFrom(source, new LocalObjectPath(new FilePath(temp.toFile()))));
+        } else {
+            LocalFiles.replace(toPath(), temp -> new FilePath(temp.toFile()).copyFrom(source));
+        }
+        commit(event, "upload");
+    }
+
+    private void commit(CacheEvents.Transfer event, String direction) throws IOException {
+        if (event.shouldCommit()) {
+            event.direction = direction;
+            event.path = file.getRemote();
+            event.bytes = Files.size(toPath());
+            event.commit();
+        }
+    }
+
+    @Override
+    public long length() throws IOException, InterruptedException {
+        return file.length();
+    }
+
+    @Override
+    public InputStream readRange(long offset, long length) throws IOException {
+        // partial restores and browsing only read ranges, which still count as using the cache
+        LocalFiles.recordAccess(toPath());
+        return FileRanges.newInputStream(toPath(), offset, length);
+    }
+
+    @Override
+    public void allocate(long length) throws IOException, InterruptedException {
+        FilePath parent = file.getParent();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        FileRanges.allocate(toPath(), length);
+    }
+
+    @Override
+    public OutputStream writeRange(long offset) throws IOException {
+        return FileRanges.newOutputStream(toPath(), offset);
     }
 
     @Override
@@ -79,4 +161,12 @@ public class LocalObjectPath extends ObjectPath {
     protected String getPath() {
         return file.getRemote();
     }
+
+    private Path toPath() {
+        return toPath(file);
+    }
+
+    private static Path toPath(FilePath filePath) {
+        return new File(filePath.getRemote()).toPath();
+    }
 }
@@ -0,0 +1,221 @@
+package jenkins.plugins.itemstorage.local;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Job;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jenkins.model.Jenkins;
+import jenkins.plugins.itemstorage.GlobalItemStorage;
+import jenkins.plugins.itemstorage.ItemStorage;
+import jenkins.plugins.jobcacher.CacheEventListener;
+import jenkins.plugins.jobcacher.CacheManager;
+import jenkins.util.SystemProperties;
+
+/**
+ * Enforces the maximum storage size configured in {@link GlobalItemStorage} for the {@link LocalItemStorage} by
+ * evicting the least recently used caches of all jobs until the total size is below the limit again. The total size
+ * is also passed to the {@link CacheEventListener}s that need it.
+ */
+@Extension
+public class LocalStorageJanitor extends AsyncPeriodicWork {
+
+    /**
+     * Number of minutes between two checks of the storage size.
+     */
+    static long RECURRENCE_PERIOD_MINUTES =
+            SystemProperties.getLong(LocalStorageJanitor.class.getName() + ".recurrencePeriodMinutes", 60L);
+
+    /**
+     * Matches the digest of the cached path all files of a cache start with.
+     */
+    private static final Pattern CACHE_NAME_PATTERN = Pattern.compile("[0-9a-f]{32}");
+
+    public LocalStorageJanitor() {
+        super("Job cache storage janitor");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(RECURRENCE_PERIOD_MINUTES);
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException {
+        Long maxStorageSize = GlobalItemStorage.get().getMaxStorageSize();
+        boolean limited = maxStorageSize != null && maxStorageSize > 0;
+        if (!limited && !CacheEventListener.isStorageSizeNeeded()) {
+            return;
+        }
+
+        ItemStorage<?> storage = GlobalItemStorage.get().getStorage();
+        if (!(storage instanceof LocalItemStorage)) {
+            return;
+        }
+
+        List<Entry> entries = collectEntries((LocalItemStorage) storage);
+        long totalSize = limited
+                ? evict(entries, maxStorageSize * 1024 * 1024, listener)
+                : entries.stream().mapToLong(Entry::size).sum();
+        CacheEventListener.fireStorageMeasured(totalSize);
+    }
+
+    static List<Entry> collectEntries(LocalItemStorage storage) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (Job<?, ?> job : Jenkins.get().allItems(Job.class)) {
+            Path cacheDir =
+                    Path.of(storage.getObjectPath(job, CacheManager.CACHE_PATH).getPath());
+            entries.addAll(collectEntries(job, cacheDir).values());
+        }
+        return entries;
+    }
+
+    /**
+     * Collects the caches stored in the cache directory of a job, each with the total size and last use of all its
+     * files.
+     *
+     * @return The caches by name
+     */
+    private static Map<String, Entry> collectEntries(Job<?, ?> job, Path cacheDir) throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        if (!Files.isDirectory(cacheDir)) {
+            return entries;
+        }
+
+        for (Path file : listFiles(cacheDir)) {
+            String name = getCacheName(file);
+            if (name != null) {
+                entries.merge(name, measure(job, cacheDir, name, file), Entry::merge);
+            }
+        }
+        return entries;
+    }
+
+    private static List<Path> listFiles(Path cacheDir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    /**
+     * Gets the name of the cache a file stored in the cache directory of a job belongs to. All files of a cache, like
+     * its archive, hash, index, shards, keys and keyed versions, start with the digest of the cached path, so they are
+     * grouped by it. Caches of the same path with different names are therefore evicted together.
+     *
+     * @return The name of the cache, or null if the file is a temporary file
+     */
+    static String getCacheName(Path file) {
+        if (LocalFiles.isTempFile(file)) {
+            return null;
+        }
+
+        String fileName = file.getFileName().toString();
+        Matcher matcher = CACHE_NAME_PATTERN.matcher(fileName);
+        return matcher.lookingAt() ? matcher.group() : fileName;
+    }
+
+    private static Entry measure(Job<?, ?> job, Path cacheDir, String name, Path path) throws IOException {
+        AtomicLong size = new AtomicLong();
+        AtomicReference<FileTime> lastUsed = new AtomicReference<>(FileTime.fromMillis(0));
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && !LocalFiles.isTempFile(file)) {
+                    size.addAndGet(attributes.size());
+                    lastUsed.accumulateAndGet(
+                            LocalFiles.getLastUsed(attributes), (a, b) -> a.compareTo(b) >= 0 ? a : b);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // the file might have been replaced or deleted by a concurrent build
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new Entry(job, cacheDir, name, size.get(), lastUsed.get());
+    }
+
+    /**
+     * Evicts the least recently used caches until their total size is below the maximum storage size. Each cache is
+     * deleted as a whole while holding the cache lock of its job, so that no build restores or saves it meanwhile.
+     * Caches which have been used since they were ranked are kept.
+     *
+     * @return The total size of the remaining caches
+     */
+    static long evict(List<Entry> entries, long maxStorageSize, TaskListener listener) throws IOException {
+        long totalSize = entries.stream().mapToLong(Entry::size).sum();
+        if (totalSize <= maxStorageSize) {
+            return totalSize;
+        }
+
+        listener.getLogger()
+                .println("Job caches use " + totalSize + " bytes, which exceeds the maximum storage size of "
+                        + maxStorageSize + " bytes. Evicting least recently used caches...");
+
+        List<Entry> leastRecentlyUsedFirst = new ArrayList<>(entries);
+        leastRecentlyUsedFirst.sort(Comparator.comparing(Entry::lastUsed));
+        for (Entry entry : leastRecentlyUsedFirst) {
+            if (totalSize <= maxStorageSize) {
+                break;
+            }
+
+            synchronized (CacheManager.getLock(entry.job())) {
+                Entry current = collectEntries(entry.job(), entry.cacheDir()).get(entry.name());
+                if (current == null) {
+                    totalSize -= entry.size();
+                    continue;
+                }
+                if (current.lastUsed().compareTo(entry.lastUsed()) > 0) {
+                    continue;
+                }
+
+                for (Path file : listFiles(entry.cacheDir())) {
+                    if (entry.name().equals(getCacheName(file))) {
+                        Util.deleteRecursive(file.toFile());
+                    }
+                }
+                totalSize -= current.size();
+            }
+
+            listener.getLogger()
+                    .println("Evicted cache " + entry.name() + " of "
+                            + entry.job().getFullName() + " last used at " + entry.lastUsed());
+            CacheEventListener.fireEvicted(
+                    entry.job(), null, entry.name(), entry.size(), CacheEventListener.EvictionReason.STORAGE_SIZE);
+        }
+        return totalSize;
+    }
+
+    /**
+     * A cache, which consists of all files in the cache directory of its job sharing its name.
+     */
+    record Entry(Job<?, ?> job, Path cacheDir, String name, long size, FileTime lastUsed) {
+
+        Entry merge(Entry other) {
+            FileTime later = lastUsed.compareTo(other.lastUsed) >= 0 ? lastUsed : other.lastUsed;
+            return new Entry(job, cacheDir, name, size + other.size, later);
+        }
+    }
+}
@@ -32,8 +32,10 @@ import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.remoting.LocalChannel;
+import hudson.remoting.VirtualChannel;
 import hudson.util.ListBoxModel;
 import jakarta.servlet.ServletException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serial;
@@ -45,10 +47,15 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.zip.Deflater;
+import jenkins.agents.ControllerToAgentFileCallable;
 import jenkins.plugins.itemstorage.GlobalItemStorage;
 import jenkins.plugins.itemstorage.ObjectPath;
+import jenkins.plugins.itemstorage.RangedObjectPath;
 import jenkins.plugins.jobcacher.arbitrary.*;
 import jenkins.plugins.jobcacher.arbitrary.WorkspaceHelper.TempFile;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
@@ -57,6 +64,7 @@ import org.apache.commons.compress.compressors.gzip.GzipParameters;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.jenkinsci.Symbol;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
@@ -76,7 +84,10 @@ public class ArbitraryFileCache extends Cache {
 
     private static final String CACHE_VALIDITY_DECIDING_FILE_HASH_FILE_EXTENSION = ".hash";
     private static final String CACHE_VALIDITY_DECIDING_FILE_DIGEST_ALGORITHM = "MD5";
+    private static final String CACHE_MANIFEST_FILE_EXTENSION = ".manifest";
     private static final String CACHE_FILENAME_PART_SEP = "-";
+    private static final int DEFAULT_RETAINED_VERSIONS = 3;
+    private static final Pattern HASH_FILES_PATTERN = Pattern.compile("\\$\\{hashFiles:([^}]*)}");
 
     private String path;
     private String includes;
@@ -85,6 +96,12 @@ public class ArbitraryFileCache extends Cache {
     private String cacheValidityDecidingFile;
     private CompressionMethod compressionMethod = CompressionMethod.TARGZ;
     private String cacheName;
+    private Long maxCacheSize;
+    private String restoreIncludes;
+    private int shards;
+    private String key;
+    private String restoreKeys;
+    private int retainedVersions;
 
     @DataBoundConstructor
     public ArbitraryFileCache(String path, String includes, String excludes) {
@@ -157,6 +174,80 @@ public class ArbitraryFileCache extends Cache {
         this.cacheName = cacheName;
     }
 
+    public Long getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    @DataBoundSetter
+    public void setMaxCacheSize(Long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    public String getRestoreIncludes() {
+        return restoreIncludes;
+    }
+
+    @DataBoundSetter
+    public void setRestoreIncludes(String restoreIncludes) {
+        this.restoreIncludes = Util.fixEmptyAndTrim(restoreIncludes);
+    }
+
+    /**
+     * @return The number of shards the cache is split into, 1 or less if it is stored as a single archive
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    @DataBoundSetter
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+
+    private boolean isSharded() {
+        return shards > 1;
+    }
+
+    /**
+     * @return The template of the key of the cache, or null if the cache is not keyed
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @DataBoundSetter
+    public void setKey(String key) {
+        this.key = Util.fixEmptyAndTrim(key);
+    }
+
+    /**
+     * @return The templates of the key prefixes to restore from if no cache exists for the key, one per line
+     */
+    public String getRestoreKeys() {
+        return restoreKeys;
+    }
+
+    @DataBoundSetter
+    public void setRestoreKeys(String restoreKeys) {
+        this.restoreKeys = Util.fixEmptyAndTrim(restoreKeys);
+    }
+
+    /**
+     * @return The number of versions of a keyed cache that are retained
+     */
+    public int getRetainedVersions() {
+        return retainedVersions > 0 ? retainedVersions : DEFAULT_RETAINED_VERSIONS;
+    }
+
+    @DataBoundSetter
+    public void setRetainedVersions(int retainedVersions) {
+        this.retainedVersions = retainedVersions;
+    }
+
+    private boolean isKeyed() {
+        return key != null;
+    }
+
     private String getSkipCacheTriggerFileHashFileName() {
         return createCacheBaseName() + CACHE_VALIDITY_DECIDING_FILE_HASH_FILE_EXTENSION;
     }
@@ -188,21 +279,53 @@ public class ArbitraryFileCache extends Cache {
             throws IOException, InterruptedException {
         String expandedPath = initialEnvironment.expand(path);
         FilePath resolvedPath = workspace.child(expandedPath);
-
-        ExistingCache existingCache = resolveExistingValidCache(cachesRoot, fallbackCachesRoot, workspace, listener);
+        CacheStats stats = new CacheStats(getCacheIdentifier());
+        CacheStatsAction.record(build, stats);
+
+        long lookupStartTime = System.nanoTime();
+        String expandedKey = null;
+        ExistingCache existingCache;
+        if (isKeyed()) {
+            expandedKey = expandKey(workspace, initialEnvironment, listener, stats);
+            existingCache = resolveExistingKeyedCache(
+                    cachesRoot,
+                    fallbackCachesRoot,
+                    expandedKey,
+                    expandRestoreKeys(workspace, initialEnvironment, listener, stats),
+                    listener,
+                    stats);
+        } else {
+            existingCache = resolveExistingValidCache(cachesRoot, fallbackCachesRoot, workspace, listener, stats);
+        }
+        long lookupTime = System.nanoTime() - lookupStartTime;
+        stats.addLookupTime(lookupTime);
+        CacheEventListener.fireLookupResolved(build, getCacheIdentifier(), stats.getLookup(), lookupTime);
         if (existingCache == null) {
             logMessage("Skip restoring cache as no up-to-date cache exists", listener);
-            return new SaverImpl(expandedPath);
+            return new SaverImpl(expandedPath, expandedKey, stats, false);
         }
 
+        boolean partiallyRestored = false;
         if (skipRestore) {
             logMessage("Skip restoring cache due skipRestore parameter", listener);
         } else {
             logMessage("Restoring cache...", listener);
             long cacheRestorationStartTime = System.nanoTime();
 
+            CacheEventListener.fireRestoreStarted(build, getCacheIdentifier());
+            boolean restored = false;
             try {
-                existingCache.restore(resolvedPath, workspace);
+                if (restoreIncludes == null) {
+                    existingCache.restore(resolvedPath, workspace, stats);
+                } else if (existingCache.restore(restoreIncludes, resolvedPath, workspace, stats)) {
+                    logMessage("Restored the entries matching " + restoreIncludes + " only", listener);
+                    partiallyRestored = true;
+                } else {
+                    logMessage("Restoring the whole cache as it cannot be restored partially", listener);
+                    existingCache.restore(resolvedPath, workspace, stats);
+                }
+                restored = true;
+                stats.setRestored(true);
 
                 long cacheRestorationEndTime = System.nanoTime();
                 logMessage(
@@ -213,33 +336,167 @@ public class ArbitraryFileCache extends Cache {
             } catch (Exception e) {
                 logMessage("Failed to restore cache, cleaning up " + path + "...", e, listener);
                 resolvedPath.deleteRecursive();
+            } finally {
+                long restoreTime = System.nanoTime() - cacheRestorationStartTime;
+                stats.addRestoreTime(restoreTime);
+                CacheEventListener.fireRestoreFinished(
+                        build,
+                        getCacheIdentifier(),
+                        existingCache.getCompressionMethod().name(),
+                        restoreTime,
+                        stats.getCompressedBytes(),
+                        restored);
             }
         }
 
-        return new SaverImpl(expandedPath);
+        return new SaverImpl(expandedPath, expandedKey, stats, partiallyRestored);
     }
 
     private ExistingCache resolveExistingValidCache(
-            ObjectPath cachesRoot, ObjectPath fallbackCachesRoot, FilePath workspace, TaskListener listener)
+            ObjectPath cachesRoot,
+            ObjectPath fallbackCachesRoot,
+            FilePath workspace,
+            TaskListener listener,
+            CacheStats stats)
             throws IOException, InterruptedException {
         logMessage("Searching cache in job specific caches...", listener);
-        ExistingCache cache = resolveExistingValidCache(cachesRoot, workspace, listener);
+        ExistingCache cache = resolveExistingValidCache(cachesRoot, workspace, listener, stats);
         if (cache != null) {
             logMessage("Found cache in job specific caches", listener);
+            stats.setLookup(CacheStats.Lookup.HIT);
             return cache;
         }
 
         logMessage("Searching cache in default caches...", listener);
-        cache = resolveExistingValidCache(fallbackCachesRoot, workspace, listener);
+        cache = resolveExistingValidCache(fallbackCachesRoot, workspace, listener, stats);
         if (cache != null) {
             logMessage("Found cache in default caches", listener);
+            stats.setLookup(CacheStats.Lookup.FALLBACK);
+            return cache;
+        }
+
+        return null;
+    }
+
+    private ExistingCache resolveExistingKeyedCache(
+            ObjectPath cachesRoot,
+            ObjectPath fallbackCachesRoot,
+            String expandedKey,
+            List<String> restoreKeyPrefixes,
+            TaskListener listener,
+            CacheStats stats)
+            throws IOException, InterruptedException {
+        logMessage("Searching cache for key " + expandedKey + "...", listener);
+        List<String> keys = readKeys(cachesRoot);
+        List<String> fallbackKeys = readKeys(fallbackCachesRoot);
+
+        ExistingCache cache =
+                resolveExistingKeyedCache(cachesRoot, keys, expandedKey::equals, "job specific caches", listener);
+        if (cache != null) {
+            stats.setLookup(CacheStats.Lookup.HIT);
+            return cache;
+        }
+
+        // the exact key in the default caches is a hit as well, the cache is not saved again for it
+        cache = resolveExistingKeyedCache(
+                fallbackCachesRoot, fallbackKeys, expandedKey::equals, "default caches", listener);
+        if (cache != null) {
+            stats.setLookup(CacheStats.Lookup.HIT);
             return cache;
         }
 
+        for (String prefix : restoreKeyPrefixes) {
+            logMessage("Searching cache for restore key " + prefix + "...", listener);
+            Predicate<String> matches = candidate -> candidate.startsWith(prefix);
+            cache = resolveExistingKeyedCache(cachesRoot, keys, matches, "job specific caches", listener);
+            if (cache == null) {
+                cache = resolveExistingKeyedCache(
+                        fallbackCachesRoot, fallbackKeys, matches, "default caches", listener);
+            }
+            if (cache != null) {
+                stats.setLookup(CacheStats.Lookup.FALLBACK);
+                return cache;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Resolves the most recently saved version of the keyed cache whose key matches.
+     */
+    private ExistingCache resolveExistingKeyedCache(
+            ObjectPath cachesRoot, List<String> keys, Predicate<String> matches, String where, TaskListener listener)
+            throws IOException, InterruptedException {
+        for (String candidate : keys) {
+            if (!matches.test(candidate)) {
+                continue;
+            }
+
+            ExistingCache cache =
+                    resolveExistingCache(cachesRoot, createCacheKeys(cachesRoot).getBaseName(candidate));
+            if (cache != null && cache.getCompressionMethod().isSupported()) {
+                logMessage("Found cache for key " + candidate + " in " + where, listener);
+                return cache;
+            }
+        }
         return null;
     }
 
-    private ExistingCache resolveExistingValidCache(ObjectPath cachesRoot, FilePath workspace, TaskListener listener)
+    private List<String> readKeys(ObjectPath cachesRoot) throws IOException, InterruptedException {
+        return cachesRoot != null ? createCacheKeys(cachesRoot).read() : List.of();
+    }
+
+    private CacheKeys createCacheKeys(ObjectPath cachesRoot) {
+        return new CacheKeys(cachesRoot, createCacheBaseName());
+    }
+
+    /**
+     * Expands the environment variables and {@code ${hashFiles:<patterns>}} expressions within the key.
+     */
+    private String expandKey(FilePath workspace, EnvVars environment, TaskListener listener, CacheStats stats)
+            throws IOException, InterruptedException {
+        String expandedKey = StringUtils.normalizeSpace(expandTemplate(key, workspace, environment, listener, stats));
+        if (expandedKey.isEmpty()) {
+            throw new AbortException("The key of the cache for " + path + " is empty");
+        }
+        return expandedKey;
+    }
+
+    private List<String> expandRestoreKeys(
+            FilePath workspace, EnvVars environment, TaskListener listener, CacheStats stats)
+            throws IOException, InterruptedException {
+        if (restoreKeys == null) {
+            return List.of();
+        }
+
+        return expandTemplate(restoreKeys, workspace, environment, listener, stats)
+                .lines()
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .toList();
+    }
+
+    private String expandTemplate(
+            String template, FilePath workspace, EnvVars environment, TaskListener listener, CacheStats stats)
+            throws IOException, InterruptedException {
+        long startTime = System.nanoTime();
+        Matcher matcher = HASH_FILES_PATTERN.matcher(environment.expand(template));
+        StringBuilder expanded = new StringBuilder();
+        while (matcher.find()) {
+            FilePath[] files = resolveFiles(workspace, matcher.group(1));
+            if (files.length == 0) {
+                logMessage("No file matches " + matcher.group(1) + " to hash for the key", listener);
+            }
+            matcher.appendReplacement(expanded, hashFiles(files));
+        }
+        matcher.appendTail(expanded);
+        stats.addValidityHashingTime(System.nanoTime() - startTime);
+        return expanded.toString();
+    }
+
+    private ExistingCache resolveExistingValidCache(
+            ObjectPath cachesRoot, FilePath workspace, TaskListener listener, CacheStats stats)
             throws IOException, InterruptedException {
         ExistingCache existingCache = resolveExistingCache(cachesRoot);
         if (existingCache == null || !existingCache.getCompressionMethod().isSupported()) {
@@ -257,30 +514,93 @@ public class ArbitraryFileCache extends Cache {
             return existingCache;
         }
 
-        return isCacheOutdated(cachesRoot, workspace, listener) ? null : existingCache;
+        return isCacheOutdated(cachesRoot, workspace, listener, stats) ? null : existingCache;
     }
 
     private ExistingCache resolveExistingCache(ObjectPath cachesRoot) throws IOException, InterruptedException {
+        return resolveExistingCache(cachesRoot, createCacheBaseName());
+    }
+
+    private ExistingCache resolveExistingCache(ObjectPath cachesRoot, String baseName)
+            throws IOException, InterruptedException {
         if (cachesRoot == null) {
             return null;
         }
 
         for (CompressionMethod compressionMethod : CompressionMethod.values()) {
-            ObjectPath cache = resolveCachePathForCompressionMethod(cachesRoot, compressionMethod);
+            ObjectPath cache = resolveCachePathForCompressionMethod(cachesRoot, baseName, compressionMethod);
             if (cache.exists()) {
-                return new ExistingCache(cache, compressionMethod);
+                return new ExistingCache(
+                        cache,
+                        resolveIndexPathForCompressionMethod(cachesRoot, baseName, compressionMethod),
+                        null,
+                        compressionMethod);
+            }
+
+            CacheShards cacheShards = resolveShardsForCompressionMethod(cachesRoot, baseName, compressionMethod);
+            if (cacheShards.exists()) {
+                return new ExistingCache(cacheShards.getPath(), null, cacheShards, compressionMethod);
             }
         }
 
         return null;
     }
 
-    private ObjectPath resolveCachePathForCompressionMethod(ObjectPath cachesRoot, CompressionMethod compressionMethod)
+    private ObjectPath resolveCachePathForCompressionMethod(
+            ObjectPath cachesRoot, String baseName, CompressionMethod compressionMethod)
+            throws IOException, InterruptedException {
+        return cachesRoot.child(compressionMethod.getCacheStrategy().createCacheName(baseName));
+    }
+
+    private ObjectPath resolveIndexPathForCompressionMethod(
+            ObjectPath cachesRoot, String baseName, CompressionMethod compressionMethod)
+            throws IOException, InterruptedException {
+        return cachesRoot.child(compressionMethod.getCacheStrategy().createCacheName(baseName) + CacheIndex.EXTENSION);
+    }
+
+    private CacheShards resolveShardsForCompressionMethod(
+            ObjectPath cachesRoot, String baseName, CompressionMethod compressionMethod) {
+        return new CacheShards(compressionMethod.getCacheStrategy(), cachesRoot, baseName);
+    }
+
+    /**
+     * Deletes the archive of the cache and its index, if any.
+     */
+    private void deleteArchive(ObjectPath cachesRoot, String baseName, CompressionMethod compressionMethod)
+            throws IOException, InterruptedException {
+        ObjectPath cache = resolveCachePathForCompressionMethod(cachesRoot, baseName, compressionMethod);
+        if (cache.exists()) {
+            cache.deleteRecursive();
+        }
+        if (compressionMethod.getCacheStrategy().isIndexed()) {
+            ObjectPath index = resolveIndexPathForCompressionMethod(cachesRoot, baseName, compressionMethod);
+            if (index.exists()) {
+                index.deleteRecursive();
+            }
+        }
+    }
+
+    /**
+     * Deletes the cache, whether it is stored as a single archive or split into shards.
+     */
+    private void deleteCache(ObjectPath cachesRoot, String baseName, CompressionMethod compressionMethod)
             throws IOException, InterruptedException {
-        return cachesRoot.child(compressionMethod.getCacheStrategy().createCacheName(createCacheBaseName()));
+        deleteArchive(cachesRoot, baseName, compressionMethod);
+        resolveShardsForCompressionMethod(cachesRoot, baseName, compressionMethod)
+                .delete();
+    }
+
+    /**
+     * Deletes the version of a keyed cache with the given key.
+     */
+    private void deleteVersion(ObjectPath cachesRoot, String version) throws IOException, InterruptedException {
+        String baseName = createCacheKeys(cachesRoot).getBaseName(version);
+        for (CompressionMethod compressionMethod : CompressionMethod.values()) {
+            deleteCache(cachesRoot, baseName, compressionMethod);
+        }
     }
 
-    private boolean isCacheOutdated(ObjectPath cachesRoot, FilePath workspace, TaskListener listener)
+    private boolean isCacheOutdated(ObjectPath cachesRoot, FilePath workspace, TaskListener listener, CacheStats stats)
             throws IOException, InterruptedException {
         ObjectPath previousClearCacheTriggerFileHash = resolvePreviousCacheValidityDecidingFileHashFile(cachesRoot);
         if (!previousClearCacheTriggerFileHash.exists()) {
@@ -289,7 +609,8 @@ public class ArbitraryFileCache extends Cache {
             return true;
         }
 
-        if (!matchesCurrentCacheValidityDecidingFileHash(previousClearCacheTriggerFileHash, workspace, listener)) {
+        if (!matchesCurrentCacheValidityDecidingFileHash(
+                previousClearCacheTriggerFileHash, workspace, listener, stats)) {
             logMessage(
                     "cacheValidityDecidingFile configured, but previous hash does not match - cache outdated",
                     listener);
@@ -315,7 +636,10 @@ public class ArbitraryFileCache extends Cache {
     }
 
     private boolean matchesCurrentCacheValidityDecidingFileHash(
-            ObjectPath previousCacheValidityDecidingFileHashFile, FilePath workspace, TaskListener listener)
+            ObjectPath previousCacheValidityDecidingFileHashFile,
+            FilePath workspace,
+            TaskListener listener,
+            CacheStats stats)
             throws IOException, InterruptedException {
         if (!isOneCacheValidityDecidingFilePresent(workspace)) {
             return false;
@@ -328,38 +652,42 @@ public class ArbitraryFileCache extends Cache {
             try (InputStream inputStream = tempFile.get().read()) {
                 String previousCacheValidityDecidingFileHash = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
                 String currentCacheValidityDecidingFileHash =
-                        getCurrentCacheValidityDecidingFileHash(workspace, listener);
+                        getCurrentCacheValidityDecidingFileHash(workspace, listener, stats);
 
                 return StringUtils.equals(previousCacheValidityDecidingFileHash, currentCacheValidityDecidingFileHash);
             }
         }
     }
 
-    private String getCurrentCacheValidityDecidingFileHash(FilePath workspace, TaskListener listener)
+    private String getCurrentCacheValidityDecidingFileHash(FilePath workspace, TaskListener listener, CacheStats stats)
             throws IOException, InterruptedException {
+        long startTime = System.nanoTime();
         if (!isOneCacheValidityDecidingFilePresent(workspace)) {
             throw new IllegalStateException(
                     "path " + cacheValidityDecidingFile + " cannot be resolved within the current workspace");
         }
 
+        FilePath[] cacheValidityDecidingFiles = resolveCacheValidityDecidingFiles(workspace);
+        String hash = hashFiles(cacheValidityDecidingFiles);
+        stats.addValidityHashingTime(System.nanoTime() - startTime);
+        logMessage(
+                "got hash " + hash + " for cacheValidityDecidingFile(s) - actual file(s): "
+                        + joinAsRelativePaths(cacheValidityDecidingFiles),
+                listener);
+
+        return hash;
+    }
+
+    private static String hashFiles(FilePath[] files) throws IOException, InterruptedException {
         try {
             MessageDigest messageDigest = MessageDigest.getInstance(CACHE_VALIDITY_DECIDING_FILE_DIGEST_ALGORITHM);
-
-            FilePath[] cacheValidityDecidingFiles = resolveCacheValidityDecidingFiles(workspace);
-            for (FilePath cacheValidityDecidingFile : cacheValidityDecidingFiles) {
-                try (InputStream inputStream = cacheValidityDecidingFile.read()) {
+            for (FilePath file : files) {
+                try (InputStream inputStream = file.read()) {
                     DigestInputStream digestInputStream = new DigestInputStream(inputStream, messageDigest);
                     IOUtils.copy(digestInputStream, NullOutputStream.NULL_OUTPUT_STREAM);
                 }
             }
-
-            String hash = Util.toHexString(messageDigest.digest());
-            logMessage(
-                    "got hash " + hash + " for cacheValidityDecidingFile(s) - actual file(s): "
-                            + joinAsRelativePaths(cacheValidityDecidingFiles),
-                    listener);
-
-            return hash;
+            return Util.toHexString(messageDigest.digest());
         } catch (NoSuchAlgorithmException e) {
             throw new IOException(e);
         }
@@ -376,17 +704,27 @@ public class ArbitraryFileCache extends Cache {
     }
 
     private FilePath[] resolveCacheValidityDecidingFiles(FilePath workspace) throws IOException, InterruptedException {
+        return resolveFiles(workspace, cacheValidityDecidingFile);
+    }
+
+    /**
+     * Resolves the files matching comma separated patterns, where patterns starting with {@code !} exclude files.
+     */
+    private static FilePath[] resolveFiles(FilePath workspace, String patterns)
+            throws IOException, InterruptedException {
         List<String> includes = new ArrayList<>();
         List<String> excludes = new ArrayList<>();
 
-        for (String decidingFilePattern : cacheValidityDecidingFile.split(",")) {
+        for (String decidingFilePattern : patterns.split(",")) {
             if (decidingFilePattern.startsWith("!")) {
                 excludes.add(decidingFilePattern.substring(1));
             } else {
                 includes.add(decidingFilePattern);
             }
         }
-        return workspace.list(String.join(",", includes), String.join(",", excludes));
+        return workspace.act(new ListFiles(String.join(",", includes), String.join(",", excludes))).stream()
+                .map(workspace::child)
+                .toArray(FilePath[]::new);
     }
 
     private class SaverImpl extends Saver {
@@ -396,15 +734,90 @@ public class ArbitraryFileCache extends Cache {
 
         private final String expandedPath;
 
-        public SaverImpl(String expandedPath) {
+        /**
+         * The expanded key of a keyed cache, or null if the cache is not keyed.
+         */
+        private final String expandedKey;
+
+        private CacheStats stats;
+
+        /**
+         * Whether only the entries matching {@link #restoreIncludes} have been restored, so saving the directory
+         * would replace the cache with a part of it.
+         */
+        private final boolean partiallyRestored;
+
+        /**
+         * The manifest of the cached directory listed by {@link #calculateSize}, reused by the following save. It only
+         * exists while {@link CacheManager} saves the caches and is deleted when saving finished, so it is always null
+         * when a build resumes and the next save lists the directory itself.
+         */
+        private transient TempFile manifest;
+
+        public SaverImpl(String expandedPath, String expandedKey, CacheStats stats, boolean partiallyRestored) {
             this.expandedPath = expandedPath;
+            this.expandedKey = expandedKey;
+            this.stats = stats;
+            this.partiallyRestored = partiallyRestored;
+        }
+
+        @Serial
+        private Object readResolve() {
+            // savers of builds started before statistics were recorded
+            if (stats == null) {
+                stats = new CacheStats(getCacheIdentifier());
+            }
+            return this;
         }
 
         @Override
         public long calculateSize(
                 ObjectPath objectPath, Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener)
                 throws IOException, InterruptedException {
-            return workspace.child(expandedPath).act(new DirectorySize(includes, excludes));
+            resolveStats(build);
+            return createManifest(workspace);
+        }
+
+        @Override
+        public Long getMaxCacheSize() {
+            return maxCacheSize;
+        }
+
+        @Override
+        public CacheStats getStats() {
+            return stats;
+        }
+
+        /**
+         * Continues with the statistics recorded on the build, which are a separate copy once the build has been
+         * resumed, so that the save is shown and exported along with the restore.
+         */
+        private void resolveStats(Run<?, ?> build) {
+            stats = CacheStatsAction.get(build).resolve(stats);
+        }
+
+        @Override
+        public void delete(ObjectPath cachesRoot, Run<?, ?> build, TaskListener listener)
+                throws IOException, InterruptedException {
+            resolveStats(build);
+            deleteManifest();
+            logMessage(
+                    "Removing cache as it exceeds the maximum cache size, next build will start without it", listener);
+
+            for (CompressionMethod compressionMethod : CompressionMethod.values()) {
+                deleteCache(cachesRoot, createCacheBaseName(), compressionMethod);
+            }
+
+            CacheKeys cacheKeys = createCacheKeys(cachesRoot);
+            for (String version : cacheKeys.read()) {
+                deleteVersion(cachesRoot, version);
+            }
+            cacheKeys.delete();
+
+            ObjectPath cacheValidityDecidingFileHashFile = cachesRoot.child(getSkipCacheTriggerFileHashFileName());
+            if (cacheValidityDecidingFileHashFile.exists()) {
+                cacheValidityDecidingFileHashFile.deleteRecursive();
+            }
         }
 
         @Override
@@ -416,52 +829,139 @@ public class ArbitraryFileCache extends Cache {
                 Launcher launcher,
                 TaskListener listener)
                 throws IOException, InterruptedException {
+            save(
+                    cachesRoot,
+                    defaultCachesRoot,
+                    build,
+                    workspace,
+                    launcher,
+                    listener,
+                    Long.MAX_VALUE,
+                    CacheSizeAccounting.RAW);
+        }
+
+        @Override
+        public long save(
+                ObjectPath cachesRoot,
+                ObjectPath defaultCachesRoot,
+                Run<?, ?> build,
+                FilePath workspace,
+                Launcher launcher,
+                TaskListener listener,
+                long maxSize,
+                CacheSizeAccounting accounting)
+                throws IOException, InterruptedException {
+            resolveStats(build);
+            try {
+                return createCache(cachesRoot, defaultCachesRoot, build, workspace, listener, maxSize, accounting);
+            } finally {
+                deleteManifest();
+            }
+        }
+
+        private long createCache(
+                ObjectPath cachesRoot,
+                ObjectPath defaultCachesRoot,
+                Run<?, ?> build,
+                FilePath workspace,
+                TaskListener listener,
+                long maxSize,
+                CacheSizeAccounting accounting)
+                throws IOException, InterruptedException {
+            String baseName =
+                    expandedKey != null ? createCacheKeys(cachesRoot).getBaseName(expandedKey) : createCacheBaseName();
+            if (partiallyRestored) {
+                logMessage("Skip cache creation as only a part of the cache has been restored", listener);
+                CacheEventListener.fireSaveSkipped(build, getCacheIdentifier(), "cache was partially restored");
+                return getStoredSize(cachesRoot, baseName, maxSize);
+            }
+
             FilePath resolvedPath = workspace.child(expandedPath);
             if (!resolvedPath.exists()) {
                 logMessage("Cannot create cache as the path does not exist", listener);
+                CacheEventListener.fireSaveSkipped(build, getCacheIdentifier(), "path does not exist");
                 if (isPathOutsideWorkspace(resolvedPath, workspace) && isMaybeInsideDockerContainer(workspace)) {
                     logMessage(
                             "Note that paths outside the workspace while using the Docker Pipeline plugin are not supported",
                             listener);
                 }
-                return;
+                return getStoredSize(cachesRoot, baseName, maxSize);
             }
 
-            if (isCacheValidityDecidingFileConfigured()) {
-                ExistingCache existingValidCache = resolveExistingValidCache(defaultCachesRoot, workspace, listener);
-                if (existingValidCache != null) {
+            if (expandedKey != null) {
+                if (readKeys(defaultCachesRoot).contains(expandedKey)) {
+                    logMessage("Skip cache creation as the default caches contain a cache for the key", listener);
+                    CacheEventListener.fireSaveSkipped(build, getCacheIdentifier(), "default cache for key exists");
+                    return 0;
+                }
+
+                if (readKeys(cachesRoot).contains(expandedKey)) {
+                    logMessage("Skip cache creation as a cache for the key exists", listener);
+                    CacheEventListener.fireSaveSkipped(build, getCacheIdentifier(), "cache for key exists");
+                    return getStoredSize(cachesRoot, baseName, maxSize);
+                }
+            } else if (isCacheValidityDecidingFileConfigured()) {
+                long lookupStartTime = System.nanoTime();
+                ExistingCache existingDefaultCache =
+                        resolveExistingValidCache(defaultCachesRoot, workspace, listener, stats);
+                ExistingCache existingValidCache = existingDefaultCache == null
+                        ? resolveExistingValidCache(cachesRoot, workspace, listener, stats)
+                        : null;
+                stats.addLookupTime(System.nanoTime() - lookupStartTime);
+
+                if (existingDefaultCache != null) {
                     logMessage("Skip cache creation as the default cache is still valid", listener);
-                    return;
+                    CacheEventListener.fireSaveSkipped(build, getCacheIdentifier(), "default cache is still valid");
+                    return 0;
                 }
 
-                existingValidCache = resolveExistingValidCache(cachesRoot, workspace, listener);
                 if (existingValidCache != null) {
                     logMessage("Skip cache creation as the cache is up-to-date", listener);
-                    return;
+                    CacheEventListener.fireSaveSkipped(build, getCacheIdentifier(), "cache is up-to-date");
+                    return getStoredSize(cachesRoot, baseName, maxSize);
                 }
             }
 
-            ExistingCache existingCache = resolveExistingCache(cachesRoot);
+            ExistingCache existingCache = resolveExistingCache(cachesRoot, baseName);
             if (existingCache != null && existingCache.getCompressionMethod() != compressionMethod) {
                 logMessage("Delete existing cache as the compression method has been changed", listener);
-                existingCache.getCache().deleteRecursive();
+                deleteCache(cachesRoot, baseName, existingCache.getCompressionMethod());
             }
 
-            ObjectPath cache = resolveCachePathForCompressionMethod(cachesRoot, compressionMethod);
+            ObjectPath cache = resolveCachePathForCompressionMethod(cachesRoot, baseName, compressionMethod);
+            ObjectPath index = resolveIndexPathForCompressionMethod(cachesRoot, baseName, compressionMethod);
 
             logMessage("Creating cache...", listener);
             long cacheCreationStartTime = System.nanoTime();
+            CacheEventListener.fireSaveStarted(build, getCacheIdentifier());
 
+            boolean saved = false;
             try {
-                compressionMethod
-                        .getCacheStrategy()
-                        .cache(resolvedPath, includes, excludes, useDefaultExcludes, cache, workspace);
+                if (manifest == null) {
+                    createManifest(workspace);
+                }
+                // the previous cache is only deleted once the new one is stored, so that a failed save keeps it
+                long size;
+                if (isSharded()) {
+                    size = resolveShardsForCompressionMethod(cachesRoot, baseName, compressionMethod)
+                            .save(resolvedPath, manifest.get(), shards, workspace, maxSize, accounting, stats);
+                    deleteArchive(cachesRoot, baseName, compressionMethod);
+                } else {
+                    size = compressionMethod
+                            .getCacheStrategy()
+                            .cache(resolvedPath, manifest.get(), cache, index, workspace, maxSize, accounting, stats);
+                    resolveShardsForCompressionMethod(cachesRoot, baseName, compressionMethod)
+                            .delete();
+                }
                 if (compressionMethod.isDeprecated()) {
                     listener.getLogger()
                             .println("WARNING: Compression method " + compressionMethod.name() + " is deprecated. Please switch to a supported compression method.");
                 }
 
-                if (isCacheValidityDecidingFileConfigured() && isOneCacheValidityDecidingFilePresent(workspace)) {
+                if (expandedKey != null) {
+                    addVersion(cachesRoot, listener);
+                } else if (isCacheValidityDecidingFileConfigured()
+                        && isOneCacheValidityDecidingFilePresent(workspace)) {
                     updateSkipCacheTriggerFileHash(cachesRoot, workspace, listener);
                 }
                 long cacheCreationEndTime = System.nanoTime();
@@ -470,8 +970,72 @@ public class ArbitraryFileCache extends Cache {
                                 + Duration.ofNanos(cacheCreationEndTime - cacheCreationStartTime)
                                         .toMillis() + "ms",
                         listener);
+                saved = true;
+                return size;
             } catch (Exception e) {
+                // the exception might have been wrapped when thrown on a remote agent
+                CacheSizeExceededException cacheSizeExceeded =
+                        ExceptionUtils.throwableOfType(e, CacheSizeExceededException.class);
+                if (cacheSizeExceeded != null) {
+                    throw cacheSizeExceeded;
+                }
+
                 logMessage("Failed to create cache", e, listener);
+                return 0;
+            } finally {
+                long saveTime = System.nanoTime() - cacheCreationStartTime;
+                stats.addSaveTime(saveTime);
+                CacheEventListener.fireSaveFinished(
+                        build,
+                        getCacheIdentifier(),
+                        compressionMethod.name(),
+                        saveTime,
+                        stats.getRawBytes(),
+                        stats.getCompressedBytes(),
+                        saved);
+            }
+        }
+
+        /**
+         * Gets the size of the cache kept in the storage when creating it is skipped, so that it still counts towards
+         * the maximum size of all caches of the job. Caches kept in the default caches do not count. Of a keyed cache,
+         * only the version with the key counts, like a saved version does, as the limits apply to each version.
+         *
+         * @return The stored size in bytes, or 0 if the size is not limited or no cache is stored
+         */
+        private long getStoredSize(ObjectPath cachesRoot, String baseName, long maxSize)
+                throws IOException, InterruptedException {
+            if (maxSize == Long.MAX_VALUE) {
+                return 0;
+            }
+
+            ExistingCache existingCache = resolveExistingCache(cachesRoot, baseName);
+            return existingCache != null ? existingCache.getStoredSize() : 0;
+        }
+
+        private long createManifest(FilePath workspace) throws IOException, InterruptedException {
+            deleteManifest();
+            manifest = WorkspaceHelper.createTempFile(workspace, CACHE_MANIFEST_FILE_EXTENSION);
+
+            long startTime = System.nanoTime();
+            long size = manifest.get()
+                    .act(new CacheManifest.CreateCallable(
+                            workspace.child(expandedPath), includes, excludes, useDefaultExcludes));
+            stats.addScanTime(System.nanoTime() - startTime);
+            stats.setRawBytes(size);
+            return size;
+        }
+
+        @Override
+        public void cleanUp() throws IOException, InterruptedException {
+            deleteManifest();
+        }
+
+        private void deleteManifest() throws IOException, InterruptedException {
+            TempFile manifest = this.manifest;
+            this.manifest = null;
+            if (manifest != null) {
+                manifest.close();
             }
         }
 
@@ -483,13 +1047,23 @@ public class ArbitraryFileCache extends Cache {
             return workspace.getChannel() == null || workspace.getChannel() instanceof LocalChannel;
         }
 
+        private void addVersion(ObjectPath cachesRoot, TaskListener listener) throws IOException, InterruptedException {
+            int versions = getRetainedVersions();
+            for (String dropped : createCacheKeys(cachesRoot).add(expandedKey, versions)) {
+                logMessage(
+                        "Removing cache for key " + dropped + " as only " + versions + " versions are retained",
+                        listener);
+                deleteVersion(cachesRoot, dropped);
+            }
+        }
+
         private void updateSkipCacheTriggerFileHash(ObjectPath cachesRoot, FilePath workspace, TaskListener listener)
                 throws IOException, InterruptedException {
             try (TempFile tempFile =
                     WorkspaceHelper.createTempFile(workspace, CACHE_VALIDITY_DECIDING_FILE_HASH_FILE_EXTENSION)) {
                 tempFile.get()
                         .write(
-                                getCurrentCacheValidityDecidingFileHash(workspace, listener),
+                                getCurrentCacheValidityDecidingFileHash(workspace, listener, stats),
                                 StandardCharsets.UTF_8.displayName());
 
                 ObjectPath skipCacheTriggerFileHashFile = cachesRoot.child(getSkipCacheTriggerFileHashFileName());
@@ -504,25 +1078,42 @@ public class ArbitraryFileCache extends Cache {
     }
 
     private void logMessage(String message, TaskListener listener) {
+        listener.getLogger()
+                .println("[Cache for " + getCacheIdentifier() + " with id " + deriveCachePath(path) + "] " + message);
+    }
+
+    private String getCacheIdentifier() {
         String cacheIdentifier = path;
         if (getCacheName() != null) {
             cacheIdentifier += " (" + getCacheName() + ")";
         }
-
-        listener.getLogger()
-                .println("[Cache for " + cacheIdentifier + " with id " + deriveCachePath(path) + "] " + message);
+        return cacheIdentifier;
     }
 
     public HttpResponse doDynamic(StaplerRequest2 req, StaplerResponse2 rsp, @AncestorInPath Job<?, ?> job)
             throws IOException, ServletException, InterruptedException {
         ObjectPath cachesRoot = CacheManager.getCachePath(GlobalItemStorage.get().getStorage(), job);
-        ExistingCache existingCache = resolveExistingCache(cachesRoot);
+        // the most recently saved version of a keyed cache is shown
+        List<String> versions = isKeyed() ? readKeys(cachesRoot) : List.of();
+        ExistingCache existingCache = versions.isEmpty()
+                ? resolveExistingCache(cachesRoot)
+                : resolveExistingCache(cachesRoot, createCacheKeys(cachesRoot).getBaseName(versions.get(0)));
 
         if (existingCache == null) {
             req.getView(this, "noCache.jelly").forward(req, rsp);
             return null;
         }
 
+        if (existingCache.getIndex() != null) {
+            HttpResponse contents = existingCache
+                    .getCompressionMethod()
+                    .getCacheStrategy()
+                    .browse(existingCache.getCache(), existingCache.getIndex(), "Cache of " + path);
+            if (contents != null) {
+                return contents;
+            }
+        }
+
         return existingCache.getCache().browse(req, rsp, job, path);
     }
 
@@ -604,10 +1195,20 @@ public class ArbitraryFileCache extends Cache {
     private static class ExistingCache {
 
         private final ObjectPath cache;
+        private final ObjectPath index;
+        private final CacheShards shards;
         private final CompressionMethod compressionMethod;
 
-        private ExistingCache(ObjectPath cache, CompressionMethod compressionMethod) {
+        /**
+         * @param cache The archive, or the shards file if the cache is split into shards
+         * @param index The index of the archive, or null if the cache is split into shards
+         * @param shards The shards, or null if the cache is stored as a single archive
+         */
+        private ExistingCache(
+                ObjectPath cache, ObjectPath index, CacheShards shards, CompressionMethod compressionMethod) {
             this.cache = cache;
+            this.index = index;
+            this.shards = shards;
             this.compressionMethod = compressionMethod;
         }
 
@@ -615,12 +1216,53 @@ public class ArbitraryFileCache extends Cache {
             return cache;
         }
 
+        /**
+         * @return The index of the archive, or null if the cache is split into shards
+         */
+        public ObjectPath getIndex() {
+            return index;
+        }
+
         public CompressionMethod getCompressionMethod() {
             return compressionMethod;
         }
 
-        public void restore(FilePath target, FilePath workspace) throws IOException, InterruptedException {
-            compressionMethod.getCacheStrategy().restore(cache, target, workspace);
+        /**
+         * @return The size of the stored archive or shards, or 0 if the storage cannot tell the size of stored objects
+         */
+        public long getStoredSize() throws IOException, InterruptedException {
+            if (shards != null) {
+                return shards.length();
+            }
+            return cache instanceof RangedObjectPath rangedCache ? rangedCache.length() : 0;
+        }
+
+        public void restore(FilePath target, FilePath workspace, CacheStats stats)
+                throws IOException, InterruptedException {
+            if (shards != null) {
+                shards.restore(target, workspace, stats);
+            } else {
+                compressionMethod.getCacheStrategy().restore(cache, target, workspace, stats);
+            }
+        }
+
+        public boolean restore(String includes, FilePath target, FilePath workspace, CacheStats stats)
+                throws IOException, InterruptedException {
+            if (shards != null) {
+                return false;
+            }
+            return compressionMethod.getCacheStrategy().restore(cache, index, includes, target, workspace, stats);
+        }
+    }
+
+    /**
+     * Lists the files matching the patterns in sorted order, like {@link FilePath#list(String, String)} does.
+     */
+    private record ListFiles(String includes, String excludes) implements ControllerToAgentFileCallable<List<String>> {
+
+        @Override
+        public List<String> invoke(File f, VirtualChannel channel) throws IOException {
+            return CachePatterns.compile(f, includes, excludes, true).list(f, true);
         }
     }
 }
@@ -30,8 +30,6 @@ import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.remoting.VirtualChannel;
-import hudson.util.DirScanner;
-import hudson.util.FileVisitor;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serial;
@@ -39,6 +37,7 @@ import java.io.Serializable;
 import java.util.concurrent.atomic.AtomicLong;
 import jenkins.agents.ControllerToAgentFileCallable;
 import jenkins.plugins.itemstorage.ObjectPath;
+import jenkins.plugins.jobcacher.arbitrary.CachePatterns;
 import org.kohsuke.stapler.Stapler;
 
 /**
@@ -124,6 +123,87 @@ public abstract class Cache implements Describable<Cache>, ExtensionPoint, Seria
                 Launcher launcher,
                 TaskListener listener)
                 throws IOException, InterruptedException;
+
+        /**
+         * Saves the files from the executor to the cache storage system, but aborts with a
+         * {@link CacheSizeExceededException} as soon as the cache grows beyond the given maximum size. Implementations
+         * should override this method to enforce the limit while saving, the default implementation calculates the raw
+         * size of the cache upfront.
+         *
+         * @param cache        The root of the cache where savers should store their cache within
+         * @param defaultCache The root of the alternate default object cache
+         * @param build        The build in progress
+         * @param workspace    The executor workspace
+         * @param launcher     The launcher
+         * @param listener     The task listener
+         * @param maxSize      The maximum size in bytes
+         * @param accounting   How the size of the cache is measured
+         * @return The size in bytes of the saved cache, or of the cache kept in the storage if saving is skipped
+         * @throws CacheSizeExceededException If the cache exceeds the maximum size, nothing has been saved then
+         * @throws IOException                If an error occurs connecting to the potentially remote executor
+         * @throws InterruptedException       If interrupted
+         */
+        public long save(
+                ObjectPath cache,
+                ObjectPath defaultCache,
+                Run<?, ?> build,
+                FilePath workspace,
+                Launcher launcher,
+                TaskListener listener,
+                long maxSize,
+                CacheSizeAccounting accounting)
+                throws IOException, InterruptedException {
+            long size = calculateSize(cache, build, workspace, launcher, listener);
+            if (size > maxSize) {
+                throw new CacheSizeExceededException(maxSize);
+            }
+
+            save(cache, defaultCache, build, workspace, launcher, listener);
+            return size;
+        }
+
+        /**
+         * Gets the maximum size in megabytes of this single cache. If it is exceeded, the cache is removed instead of
+         * saved.
+         *
+         * @return The maximum size, or null if unlimited
+         */
+        public Long getMaxCacheSize() {
+            return null;
+        }
+
+        /**
+         * Gets the statistics recorded while this cache is restored and saved, the time spent waiting for the lock of
+         * the job's caches is added to them.
+         *
+         * @return The statistics, or null if this cache does not record any
+         */
+        public CacheStats getStats() {
+            return null;
+        }
+
+        /**
+         * Removes this cache from the cache storage system, because it has grown beyond the configured maximum size.
+         * Implementations should override this method, the default implementation leaves the cache untouched.
+         *
+         * @param cache    The root of the cache where savers store their cache within
+         * @param build    The build in progress
+         * @param listener The task listener
+         * @throws IOException          If an error occurs connecting to the cache storage system
+         * @throws InterruptedException If interrupted
+         */
+        public void delete(ObjectPath cache, Run<?, ?> build, TaskListener listener)
+                throws IOException, InterruptedException {}
+
+        /**
+         * Releases what {@link #calculateSize} has prepared but no save or delete has used, like temporary files on
+         * the executor. Called once all caches of the build have been saved, also if saving failed. The default
+         * implementation does nothing.
+         *
+         * @throws IOException          If an error occurs connecting to the potentially remote executor
+         * @throws InterruptedException If interrupted
+         */
+        public void cleanUp() throws IOException, InterruptedException {}
     }
 
     /**
@@ -153,7 +233,8 @@ public abstract class Cache implements Describable<Cache>, ExtensionPoint, Seria
     }
 
     /**
-     * Utility class to calculate the size of a potentially remote directory given a pattern and excludes.
+     * Utility class to calculate the size of a potentially remote directory given a pattern and excludes. Symlinks
+     * are not followed and do not contribute to the size, like when the directory is archived.
      */
     public static class DirectorySize implements ControllerToAgentFileCallable<Long> {
 
@@ -162,34 +243,24 @@ public abstract class Cache implements Describable<Cache>, ExtensionPoint, Seria
 
         private final String glob;
         private final String excludes;
+        private final boolean useDefaultExcludes;
 
         public DirectorySize(String glob, String excludes) {
+            this(glob, excludes, true);
+        }
+
+        public DirectorySize(String glob, String excludes, boolean useDefaultExcludes) {
             this.glob = glob;
             this.excludes = excludes;
+            this.useDefaultExcludes = useDefaultExcludes;
         }
 
         @Override
         public Long invoke(File f, VirtualChannel channel) throws IOException {
             AtomicLong total = new AtomicLong(0L);
 
-            new DirScanner.Glob(glob, excludes).scan(f, new FileVisitor() {
-                @Override
-                public void visit(File f, String relativePath) throws IOException {
-                    if (f.isFile()) {
-                        total.addAndGet(f.length());
-                    }
-                }
-
-                @Override
-                public boolean understandsSymlink() {
-                    return true;
-                }
-
-                @Override
-                public void visitSymlink(File link, String target, String relativePath) throws IOException {
-                    // Skip symlinks - they should not contribute to the cache size
-                }
-            });
+            CachePatterns.compile(f, glob, excludes, useDefaultExcludes)
+                    .walk(f, false, (relativePath, attributes) -> total.addAndGet(attributes.size()));
 
             return total.get();
         }
@@ -0,0 +1,367 @@
+package jenkins.plugins.jobcacher;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.Job;
+import hudson.model.Run;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Receives notifications about the activity of all caches, for instance to build analytics on top of them. All
+ * durations are in nanoseconds, the listeners are called synchronously by the thread restoring or saving the caches
+ * and should therefore return quickly.
+ *
+ * <p>The events are only created if at least one listener is registered, so that they do not cost anything
+ * otherwise. The plugin publishes its own metrics and JDK Flight Recorder events through listeners as well, see
+ * {@link MetricsCacheEventListener} and {@link FlightRecorderCacheEventListener}.
+ */
+public abstract class CacheEventListener implements ExtensionPoint {
+
+    private static final Logger LOG = Logger.getLogger(CacheEventListener.class.getName());
+
+    /**
+     * Called before the caches of a build are restored or saved, including the wait for the lock of the job's caches.
+     */
+    public void onOperationStarted(OperationStarted event) {}
+
+    /**
+     * Called after the caches of a build have been restored or saved, or failed to be.
+     */
+    public void onOperationFinished(OperationFinished event) {}
+
+    /**
+     * Called when it has been resolved where a cache is restored from.
+     */
+    public void onLookupResolved(LookupResolved event) {}
+
+    /**
+     * Called before a cache is restored into the workspace.
+     */
+    public void onRestoreStarted(RestoreStarted event) {}
+
+    /**
+     * Called after a cache has been restored into the workspace or failed to be restored.
+     */
+    public void onRestoreFinished(RestoreFinished event) {}
+
+    /**
+     * Called when a cache is not saved, because it is up-to-date or there is nothing to be cached.
+     */
+    public void onSaveSkipped(SaveSkipped event) {}
+
+    /**
+     * Called before a cache is saved from the workspace.
+     */
+    public void onSaveStarted(SaveStarted event) {}
+
+    /**
+     * Called after a cache has been saved from the workspace or failed to be saved.
+     */
+    public void onSaveFinished(SaveFinished event) {}
+
+    /**
+     * Called after one or all caches of a job have been removed from the cache storage to stay within a size limit.
+     */
+    public void onEvicted(Evicted event) {}
+
+    /**
+     * Called when a build has acquired the lock of its job's caches.
+     */
+    public void onLockAcquired(LockAcquired event) {}
+
+    /**
+     * Called when a build has released the lock of its job's caches.
+     */
+    public void onLockReleased(LockReleased event) {}
+
+    /**
+     * Called after the total size of the local cache storage has been measured, which is done periodically if the size
+     * of the storage is limited or a listener {@linkplain #needsStorageSize() needs it}.
+     */
+    public void onStorageMeasured(StorageMeasured event) {}
+
+    /**
+     * Whether this listener needs the total size of the local cache storage, which is only measured on demand as all
+     * caches have to be walked to do so.
+     */
+    public boolean needsStorageSize() {
+        return false;
+    }
+
+    /**
+     * @param run       The build
+     * @param operation Whether the caches are restored or saved
+     */
+    public record OperationStarted(Run<?, ?> run, Operation operation) {}
+
+    /**
+     * @param run       The build
+     * @param operation Whether the caches have been restored or saved
+     * @param caches    The number of caches
+     * @param duration  The time spent restoring or saving the caches, including the wait for the lock
+     */
+    public record OperationFinished(Run<?, ?> run, Operation operation, int caches, long duration) {}
+
+    /**
+     * @param run      The build
+     * @param cache    The cache
+     * @param lookup   Where the cache is restored from
+     * @param duration The time spent searching for an existing cache
+     */
+    public record LookupResolved(Run<?, ?> run, String cache, CacheStats.Lookup lookup, long duration) {}
+
+    /**
+     * @param run   The build
+     * @param cache The cache
+     */
+    public record RestoreStarted(Run<?, ?> run, String cache) {}
+
+    /**
+     * @param run               The build
+     * @param cache             The cache
+     * @param compressionMethod The compression method of the archive, or null if the cache has none
+     * @param duration          The time spent restoring the cache
+     * @param bytes             The size of the transferred archive
+     * @param successful        Whether the cache has been restored
+     */
+    public record RestoreFinished(
+            Run<?, ?> run,
+            String cache,
+            @CheckForNull String compressionMethod,
+            long duration,
+            long bytes,
+            boolean successful) {}
+
+    /**
+     * @param run    The build
+     * @param cache  The cache
+     * @param reason Why the cache has not been saved
+     */
+    public record SaveSkipped(Run<?, ?> run, String cache, String reason) {}
+
+    /**
+     * @param run   The build
+     * @param cache The cache
+     */
+    public record SaveStarted(Run<?, ?> run, String cache) {}
+
+    /**
+     * @param run               The build
+     * @param cache             The cache
+     * @param compressionMethod The compression method of the archive, or null if the cache has none
+     * @param duration          The time spent saving the cache
+     * @param rawBytes          The total size of the cached files
+     * @param bytes             The size of the transferred archive
+     * @param successful        Whether the cache has been saved
+     */
+    public record SaveFinished(
+            Run<?, ?> run,
+            String cache,
+            @CheckForNull String compressionMethod,
+            long duration,
+            long rawBytes,
+            long bytes,
+            boolean successful) {}
+
+    /**
+     * @param job    The job the cache belonged to
+     * @param run    The build that exceeded the limit, or null if the cache has been evicted from the storage
+     * @param cache  The cache, the name of the archive if evicted from the storage, or null if unknown or all caches of
+     *               the job have been removed
+     * @param bytes  The size of the evicted cache, or -1 if unknown
+     * @param reason Which limit has been exceeded
+     */
+    public record Evicted(
+            Job<?, ?> job,
+            @CheckForNull Run<?, ?> run,
+            @CheckForNull String cache,
+            long bytes,
+            EvictionReason reason) {}
+
+    /**
+     * @param run      The build
+     * @param duration The time the build waited for the lock
+     */
+    public record LockAcquired(Run<?, ?> run, long duration) {}
+
+    /**
+     * @param run      The build
+     * @param duration The time the build held the lock
+     */
+    public record LockReleased(Run<?, ?> run, long duration) {}
+
+    /**
+     * @param bytes The total size of all caches in the local storage
+     */
+    public record StorageMeasured(long bytes) {}
+
+    /**
+     * The operations performed on all caches of a build.
+     */
+    public enum Operation {
+        RESTORE,
+        SAVE
+    }
+
+    /**
+     * The limits that cause caches to be evicted.
+     */
+    public enum EvictionReason {
+        /**
+         * The cache exceeded its own maximum size.
+         */
+        CACHE_SIZE,
+        /**
+         * The caches of the job exceeded the maximum size of the job's caches, and this was the largest of them.
+         */
+        LARGEST_CACHE,
+        /**
+         * The caches of the job exceeded the maximum size of the job's caches, all of them have been removed.
+         */
+        JOB_SIZE,
+        /**
+         * The cache storage exceeded its maximum size, and this was the least recently used cache.
+         */
+        STORAGE_SIZE
+    }
+
+    /**
+     * Checks whether any listener is registered, so that expensive measurements for the events can be skipped
+     * otherwise.
+     */
+    @Restricted(NoExternalUse.class)
+    public static boolean hasListeners() {
+        return !all().isEmpty();
+    }
+
+    /**
+     * Checks whether any listener needs the total size of the local cache storage.
+     */
+    @Restricted(NoExternalUse.class)
+    public static boolean isStorageSizeNeeded() {
+        return all().stream().anyMatch(CacheEventListener::needsStorageSize);
+    }
+
+    @Restricted(NoExternalUse.class)
+    public static void fireOperationStarted(Run<?, ?> run, Operation operation) {
+        if (hasListeners()) {
+            OperationStarted event = new OperationStarted(run, operation);
+            fire(listener -> listener.onOperationStarted(event));
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public static void fireOperationFinished(Run<?, ?> run, Operation operation, int caches, long duration) {
+        if (hasListeners()) {
+            OperationFinished event = new OperationFinished(run, operation, caches, duration);
+            fire(listener -> listener.onOperationFinished(event));
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public static void fireLookupResolved(Run<?, ?> run, String cache, CacheStats.Lookup lookup, long duration) {
+        if (hasListeners()) {
+            LookupResolved event = new LookupResolved(run, cache, lookup, duration);
+            fire(listener -> listener.onLookupResolved(event));
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public static void fireRestoreStarted(Run<?, ?> run, String cache) {
+        if (hasListeners()) {
+            RestoreStarted event = new RestoreStarted(run, cache);
+            fire(listener -> listener.onRestoreStarted(event));
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public static void fireRestoreFinished(
+            Run<?, ?> run, String cache, String compressionMethod, long duration, long bytes, boolean successful) {
+        if (hasListeners()) {
+            RestoreFinished event = new RestoreFinished(run, cache, compressionMethod, duration, bytes, successful);
+            fire(listener -> listener.onRestoreFinished(event));
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public static void fireSaveSkipped(Run<?, ?> run, String cache, String reason) {
+        if (hasListeners()) {
+            SaveSkipped event = new SaveSkipped(run, cache, reason);
+            fire(listener -> listener.onSaveSkipped(event));
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public static void fireSaveStarted(Run<?, ?> run, String cache) {
+        if (hasListeners()) {
+            SaveStarted event = new SaveStarted(run, cache);
+            fire(listener -> listener.onSaveStarted(event));
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public static void fireSaveFinished(
+            Run<?, ?> run,
+            String cache,
+            String compressionMethod,
+            long duration,
+            long rawBytes,
+            long bytes,
+            boolean successful) {
+        if (hasListeners()) {
+            SaveFinished event = new SaveFinished(run, cache, compressionMethod, duration, rawBytes, bytes, successful);
+            fire(listener -> listener.onSaveFinished(event));
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public static void fireEvicted(Job<?, ?> job, Run<?, ?> run, String cache, long bytes, EvictionReason reason) {
+        if (hasListeners()) {
+            Evicted event = new Evicted(job, run, cache, bytes, reason);
+            fire(listener -> listener.onEvicted(event));
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public static void fireLockAcquired(Run<?, ?> run, long duration) {
+        if (hasListeners()) {
+            LockAcquired event = new LockAcquired(run, duration);
+            fire(listener -> listener.onLockAcquired(event));
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public static void fireLockReleased(Run<?, ?> run, long duration) {
+        if (hasListeners()) {
+            LockReleased event = new LockReleased(run, duration);
+            fire(listener -> listener.onLockReleased(event));
+        }
+    }
+
+    @Restricted(NoExternalUse.class)
+    public static void fireStorageMeasured(long bytes) {
+        if (hasListeners()) {
+            StorageMeasured event = new StorageMeasured(bytes);
+            fire(listener -> listener.onStorageMeasured(event));
+        }
+    }
+
+    private static void fire(Consumer<CacheEventListener> notification) {
+        for (CacheEventListener listener : all()) {
+            try {
+                notification.accept(listener);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Cache event listener " + listener + " failed", e);
+            }
+        }
+    }
+
+    public static ExtensionList<CacheEventListener> all() {
+        return ExtensionList.lookup(CacheEventListener.class);
+    }
+}
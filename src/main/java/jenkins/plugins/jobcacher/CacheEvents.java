@@ -0,0 +1,120 @@
+package jenkins.plugins.jobcacher;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * The JDK Flight Recorder events of restoring and saving caches. The archive events are emitted by the JVM that
+ * creates or extracts the archive, which is the agent the build runs on, all other events by the controller. The
+ * operation, restore and save events are emitted by {@link FlightRecorderCacheEventListener}.
+ *
+ * <p>The events are disabled unless a recording enables them, for example with a custom {@code .jfc} settings file
+ * that sets {@code enabled} for the events of the {@code jenkins.plugins.jobcacher} namespace. While disabled, emitting
+ * them costs little more than the allocation of the event.
+ */
+@Restricted(NoExternalUse.class)
+public final class CacheEvents {
+
+    private CacheEvents() {}
+
+    /**
+     * Restoring or saving all caches of a build, including the time spent waiting for the lock of the job's caches.
+     */
+    @Name("jenkins.plugins.jobcacher.Operation")
+    @Label("Cache Operation")
+    @Category({"Jenkins", "Job Cacher"})
+    @Description("Restoring or saving all caches of a build")
+    public static class Operation extends Event {
+
+        @Label("Job")
+        public String job;
+
+        @Label("Operation")
+        public String operation;
+
+        @Label("Caches")
+        public int caches;
+    }
+
+    /**
+     * The fields shared by the events of a single cache.
+     */
+    abstract static class CacheEvent extends Event {
+
+        @Label("Job")
+        public String job;
+
+        @Label("Cache")
+        public String cache;
+
+        @Label("Compression Method")
+        public String compressionMethod;
+
+        @Label("Archive Size")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("jenkins.plugins.jobcacher.Restore")
+    @Label("Cache Restore")
+    @Category({"Jenkins", "Job Cacher"})
+    @Description("Restoring a single cache into the workspace")
+    public static class Restore extends CacheEvent {}
+
+    @Name("jenkins.plugins.jobcacher.Save")
+    @Label("Cache Save")
+    @Category({"Jenkins", "Job Cacher"})
+    @Description("Saving a single cache from the workspace")
+    public static class Save extends CacheEvent {}
+
+    /**
+     * Creating or extracting the archive of a cache. It runs on the agent, which does not know about the job and the
+     * cache, but the directory is the path of the cache in the workspace.
+     */
+    @Name("jenkins.plugins.jobcacher.Archive")
+    @Label("Cache Archive")
+    @Category({"Jenkins", "Job Cacher"})
+    @Description("Creating or extracting the archive of a cache")
+    public static class Archive extends Event {
+
+        @Label("Operation")
+        public String operation;
+
+        @Label("Format")
+        public String format;
+
+        @Label("Directory")
+        public String directory;
+
+        @Label("Archive Size")
+        @DataAmount
+        public long bytes;
+    }
+
+    /**
+     * Transferring the archive of a cache between the workspace and the cache storage. The path in the storage is
+     * made up of the job and the cache.
+     */
+    @Name("jenkins.plugins.jobcacher.Transfer")
+    @Label("Cache Transfer")
+    @Category({"Jenkins", "Job Cacher"})
+    @Description("Transferring the archive of a cache between the workspace and the cache storage")
+    public static class Transfer extends Event {
+
+        @Label("Direction")
+        public String direction;
+
+        @Label("Path")
+        public String path;
+
+        @Label("Archive Size")
+        @DataAmount
+        public long bytes;
+    }
+}
@@ -10,9 +10,13 @@ import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.plugins.itemstorage.ItemStorage;
 import jenkins.plugins.itemstorage.ObjectPath;
@@ -24,11 +28,17 @@ public class CacheManager {
 
     private static final Logger LOG = Logger.getLogger(CacheManager.class.getName());
 
-    // Could potentially grow indefinitely as jobs are created and destroyed
-    private static final Map<String, Object> locks = new HashMap<>();
+    /**
+     * The path within the item storage where all caches of a job are stored.
+     */
+    public static final String CACHE_PATH = "cache";
+
+    // Could potentially grow indefinitely as jobs are created and destroyed. Concurrent, as builds and the storage
+    // janitor have to get the same lock for a job.
+    private static final Map<String, Object> locks = new ConcurrentHashMap<>();
 
     public static ObjectPath getCachePath(ItemStorage<?> storage, Job<?, ?> job) {
-        return storage.getObjectPath(job, "cache");
+        return storage.getObjectPath(job, CACHE_PATH);
     }
 
     public static ObjectPath getCachePath(ItemStorage<?> storage, Run<?, ?> run) {
@@ -36,14 +46,35 @@ public class CacheManager {
     }
 
     public static ObjectPath getCachePathForBranch(ItemStorage<?> storage, Run<?, ?> run, String branch) {
-        return storage.getObjectPathForBranch(run.getParent(), "cache", branch);
+        return storage.getObjectPathForBranch(run.getParent(), CACHE_PATH, branch);
     }
 
-    private static Object getLock(Job<?, ?> j) {
+    /**
+     * Internal method only
+     */
+    public static Object getLock(Job<?, ?> j) {
         String jobFullName = j.getFullName();
         return locks.computeIfAbsent(jobFullName, k -> new Object());
     }
 
+    private static long logLockWait(Run<?, ?> run, long lockRequested) {
+        long lockWait = System.nanoTime() - lockRequested;
+        CacheEventListener.fireLockAcquired(run, lockWait);
+        LOG.log(Level.FINE, "Build {0} waited {1} ms for the cache lock", new Object[] {
+            run, TimeUnit.NANOSECONDS.toMillis(lockWait)
+        });
+        return lockWait;
+    }
+
+    private static void addLockWait(Run<?, ?> run, List<Cache.Saver> cacheSavers, long lockWait) {
+        CacheStatsAction action = CacheStatsAction.get(run);
+        for (Cache.Saver saver : cacheSavers) {
+            if (saver.getStats() != null) {
+                action.resolve(saver.getStats()).addLockWaitTime(lockWait);
+            }
+        }
+    }
+
     /**
      * Internal method only
      */
@@ -58,6 +89,36 @@ public class CacheManager {
             String defaultBranch,
             boolean skipRestore)
             throws IOException, InterruptedException {
+        long operationStarted = System.nanoTime();
+        CacheEventListener.fireOperationStarted(run, CacheEventListener.Operation.RESTORE);
+        try {
+            return restore(
+                    storage,
+                    run,
+                    workspace,
+                    launcher,
+                    listener,
+                    initialEnvironment,
+                    caches,
+                    defaultBranch,
+                    skipRestore);
+        } finally {
+            CacheEventListener.fireOperationFinished(
+                    run, CacheEventListener.Operation.RESTORE, caches.size(), System.nanoTime() - operationStarted);
+        }
+    }
+
+    private static List<Cache.Saver> restore(
+            ItemStorage<?> storage,
+            Run<?, ?> run,
+            FilePath workspace,
+            Launcher launcher,
+            TaskListener listener,
+            EnvVars initialEnvironment,
+            List<Cache> caches,
+            String defaultBranch,
+            boolean skipRestore)
+            throws IOException, InterruptedException {
         ObjectPath cachePath = getCachePath(storage, run);
 
         ObjectPath defaultCachePath = null;
@@ -71,17 +132,25 @@ public class CacheManager {
 
         // Lock the cache for reading - would be nice to make it more fine grain for multiple readers of cache
         List<Cache.Saver> cacheSavers = new ArrayList<>();
-        synchronized (getLock(run.getParent())) {
-            for (Cache cache : caches) {
-                cacheSavers.add(cache.cache(
-                        cachePath,
-                        defaultCachePath,
-                        run,
-                        workspace,
-                        launcher,
-                        listener,
-                        initialEnvironment,
-                        skipRestore));
+        Object lock = getLock(run.getParent());
+        long lockRequested = System.nanoTime();
+        synchronized (lock) {
+            long lockWait = logLockWait(run, lockRequested);
+            try {
+                for (Cache cache : caches) {
+                    cacheSavers.add(cache.cache(
+                            cachePath,
+                            defaultCachePath,
+                            run,
+                            workspace,
+                            launcher,
+                            listener,
+                            initialEnvironment,
+                            skipRestore));
+                }
+                addLockWait(run, cacheSavers, lockWait);
+            } finally {
+                CacheEventListener.fireLockReleased(run, System.nanoTime() - lockRequested - lockWait);
             }
         }
         return cacheSavers;
@@ -97,6 +166,42 @@ public class CacheManager {
             Launcher launcher,
             TaskListener listener,
             Long maxCacheSize,
+            MaxCacheSizePolicy maxCacheSizePolicy,
+            CacheSizeAccounting maxCacheSizeAccounting,
+            List<Cache> caches,
+            List<Cache.Saver> cacheSavers,
+            String defaultBranch)
+            throws IOException, InterruptedException {
+        long operationStarted = System.nanoTime();
+        CacheEventListener.fireOperationStarted(run, CacheEventListener.Operation.SAVE);
+        try {
+            doSave(
+                    storage,
+                    run,
+                    workspace,
+                    launcher,
+                    listener,
+                    maxCacheSize,
+                    maxCacheSizePolicy,
+                    maxCacheSizeAccounting,
+                    caches,
+                    cacheSavers,
+                    defaultBranch);
+        } finally {
+            CacheEventListener.fireOperationFinished(
+                    run, CacheEventListener.Operation.SAVE, cacheSavers.size(), System.nanoTime() - operationStarted);
+        }
+    }
+
+    private static void doSave(
+            ItemStorage<?> storage,
+            Run<?, ?> run,
+            FilePath workspace,
+            Launcher launcher,
+            TaskListener listener,
+            Long maxCacheSize,
+            MaxCacheSizePolicy maxCacheSizePolicy,
+            CacheSizeAccounting maxCacheSizeAccounting,
             List<Cache> caches,
             List<Cache.Saver> cacheSavers,
             String defaultBranch)
@@ -110,31 +215,105 @@ public class CacheManager {
                     getCachePathForBranch(storage, run, URLEncoder.encode(defaultBranch, StandardCharsets.UTF_8));
         }
 
-        // First calculate size of cache to check if it should just be deleted
-        boolean exceedsMaxCacheSize =
-                exceedsMaxCacheSize(cachePath, run, workspace, launcher, listener, maxCacheSize, cacheSavers);
+        // The raw size of all caches is calculated before any is saved, so that nothing is saved if the caches are
+        // removed anyway. It only walks the workspace of this build, so other builds of the job do not wait for it
+        // under the lock. Savers reuse the scan of the calculation when saving.
+        List<Long> cacheSizes = null;
+        if (isLimited(maxCacheSize)
+                && (maxCacheSizePolicy == MaxCacheSizePolicy.EVICT_LARGEST
+                        || maxCacheSizeAccounting != CacheSizeAccounting.COMPRESSED)) {
+            boolean calculated = false;
+            try {
+                cacheSizes = calculateSizes(cachePath, run, workspace, launcher, listener, cacheSavers);
+                calculated = true;
+            } finally {
+                if (!calculated) {
+                    cleanUp(cacheSavers);
+                }
+            }
+        }
 
         // synchronize on the build's parent object as we are going to write to the shared cache
-        synchronized (getLock(run.getParent())) {
-            // If total size is greater than configured maximum, delete all caches to start fresh next build
-            if (exceedsMaxCacheSize) {
-                listener.getLogger()
-                        .println("Removing job cache as it has grown beyond configured maximum size of " + maxCacheSize
-                                + "M. Next build will start with no cache.");
-
-                if (cachePath.exists()) {
-                    cachePath.deleteRecursive();
-                } else {
-                    listener.getLogger()
-                            .println("Cache does not exist even though max cache was reached."
-                                    + "  You may want to consider increasing maximum cache size.");
+        Object lock = getLock(run.getParent());
+        long lockRequested = System.nanoTime();
+        synchronized (lock) {
+            long lockWait = logLockWait(run, lockRequested);
+            addLockWait(run, cacheSavers, lockWait);
+            try {
+                Map<Cache.Saver, Long> evictedSavers = new HashMap<>();
+                List<Cache.Saver> saversToSave = cacheSavers;
+                long remainingSize = Long.MAX_VALUE;
+                if (isLimited(maxCacheSize)) {
+                    if (cacheSizes != null) {
+                        if (exceedsMaxCacheSize(maxCacheSize, cacheSizes)) {
+                            if (maxCacheSizePolicy == MaxCacheSizePolicy.EVICT_LARGEST) {
+                                listener.getLogger()
+                                        .println("Removing largest caches as the job cache has grown beyond configured"
+                                                + " maximum size of " + maxCacheSize + "M.");
+                                for (Cache.Saver evicted : selectLargest(maxCacheSize, cacheSavers, cacheSizes)) {
+                                    evictedSavers.put(evicted, cacheSizes.get(cacheSavers.indexOf(evicted)));
+                                }
+                            } else {
+                                clearJobCache(cachePath, run, listener, maxCacheSize);
+                                saversToSave = List.of();
+                            }
+                        }
+                    } else {
+                        // The compressed size is only known while the caches are saved, so it is enforced meanwhile
+                        remainingSize = toBytes(maxCacheSize);
+                    }
                 }
-            } else {
-                // Otherwise, request each cache to save itself for the next build
+
+                // Request each cache to save itself for the next build
                 LOG.fine("Saving cache for build " + run);
-                for (Cache.Saver saver : cacheSavers) {
-                    saver.save(cachePath, defaultCachePath, run, workspace, launcher, listener);
+                for (Cache.Saver saver : saversToSave) {
+                    if (evictedSavers.containsKey(saver)) {
+                        saver.delete(cachePath, run, listener);
+                        CacheEventListener.fireEvicted(
+                                run.getParent(),
+                                run,
+                                getCacheName(saver),
+                                evictedSavers.get(saver),
+                                CacheEventListener.EvictionReason.LARGEST_CACHE);
+                        continue;
+                    }
+
+                    long maxSize = Math.min(remainingSize, toBytes(saver.getMaxCacheSize()));
+                    if (maxSize == Long.MAX_VALUE) {
+                        saver.save(cachePath, defaultCachePath, run, workspace, launcher, listener);
+                        continue;
+                    }
+
+                    try {
+                        remainingSize -= saver.save(
+                                cachePath,
+                                defaultCachePath,
+                                run,
+                                workspace,
+                                launcher,
+                                listener,
+                                maxSize,
+                                maxCacheSizeAccounting);
+                    } catch (CacheSizeExceededException e) {
+                        if (toBytes(saver.getMaxCacheSize()) <= remainingSize) {
+                            saver.delete(cachePath, run, listener);
+                            CacheEventListener.fireEvicted(
+                                    run.getParent(),
+                                    run,
+                                    getCacheName(saver),
+                                    -1,
+                                    CacheEventListener.EvictionReason.CACHE_SIZE);
+                            continue;
+                        }
+
+                        // Stop saving as soon as the total size is greater than configured maximum
+                        clearJobCache(cachePath, run, listener, maxCacheSize);
+                        break;
+                    }
                 }
+            } finally {
+                cleanUp(cacheSavers);
+                CacheEventListener.fireLockReleased(run, System.nanoTime() - lockRequested - lockWait);
             }
         }
 
@@ -146,24 +325,101 @@ public class CacheManager {
         }
     }
 
-    private static boolean exceedsMaxCacheSize(
+    private static void cleanUp(List<Cache.Saver> cacheSavers) throws InterruptedException {
+        for (Cache.Saver saver : cacheSavers) {
+            try {
+                saver.cleanUp();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Failed to clean up after saving cache", e);
+            }
+        }
+    }
+
+    /**
+     * Deletes all caches of the job to start fresh next build, as their total size is greater than configured maximum.
+     */
+    private static void clearJobCache(ObjectPath cachePath, Run<?, ?> run, TaskListener listener, Long maxCacheSize)
+            throws IOException, InterruptedException {
+        listener.getLogger()
+                .println("Removing job cache as it has grown beyond configured maximum size of " + maxCacheSize
+                        + "M. Next build will start with no cache.");
+
+        if (cachePath.exists()) {
+            cachePath.deleteRecursive();
+            CacheEventListener.fireEvicted(run.getParent(), run, null, -1, CacheEventListener.EvictionReason.JOB_SIZE);
+        } else {
+            listener.getLogger()
+                    .println("Cache does not exist even though max cache was reached."
+                            + "  You may want to consider increasing maximum cache size.");
+        }
+    }
+
+    private static String getCacheName(Cache.Saver saver) {
+        return saver.getStats() != null ? saver.getStats().getCache() : null;
+    }
+
+    private static List<Long> calculateSizes(
             ObjectPath cachePath,
             Run<?, ?> run,
             FilePath workspace,
             Launcher launcher,
             TaskListener listener,
-            Long maxCacheSize,
             List<Cache.Saver> cacheSavers)
             throws IOException, InterruptedException {
-        if (maxCacheSize == null || maxCacheSize == 0) {
-            return false;
+        List<Long> cacheSizes = new ArrayList<>();
+        for (Cache.Saver saver : cacheSavers) {
+            cacheSizes.add(saver.calculateSize(cachePath, run, workspace, launcher, listener));
         }
+        return cacheSizes;
+    }
 
+    private static boolean exceedsMaxCacheSize(Long maxCacheSize, List<Long> cacheSizes) {
         long totalSize = 0L;
-        for (Cache.Saver saver : cacheSavers) {
-            totalSize += saver.calculateSize(cachePath, run, workspace, launcher, listener);
+        for (Long cacheSize : cacheSizes) {
+            totalSize += cacheSize;
+        }
+
+        return exceedsMaxCacheSize(maxCacheSize, totalSize);
+    }
+
+    private static boolean exceedsMaxCacheSize(Long maxCacheSize, long size) {
+        return size > toBytes(maxCacheSize);
+    }
+
+    /**
+     * Converts a maximum cache size in megabytes to bytes.
+     *
+     * @return The size in bytes, or {@link Long#MAX_VALUE} if unlimited
+     */
+    private static long toBytes(Long maxCacheSize) {
+        return isLimited(maxCacheSize) ? maxCacheSize * 1024 * 1024 : Long.MAX_VALUE;
+    }
+
+    private static boolean isLimited(Long maxCacheSize) {
+        return maxCacheSize != null && maxCacheSize != 0;
+    }
+
+    /**
+     * Selects the largest caches that need to be removed so that the remaining ones fit into the maximum cache size.
+     */
+    private static List<Cache.Saver> selectLargest(
+            Long maxCacheSize, List<Cache.Saver> cacheSavers, List<Long> cacheSizes) {
+        List<Integer> largestFirst = new ArrayList<>();
+        long totalSize = 0L;
+        for (int i = 0; i < cacheSavers.size(); i++) {
+            largestFirst.add(i);
+            totalSize += cacheSizes.get(i);
         }
+        largestFirst.sort(Comparator.comparing(cacheSizes::get, Comparator.reverseOrder()));
 
-        return totalSize > maxCacheSize * 1024 * 1024;
+        List<Cache.Saver> selected = new ArrayList<>();
+        for (int i : largestFirst) {
+            if (!exceedsMaxCacheSize(maxCacheSize, totalSize)) {
+                break;
+            }
+            selected.add(cacheSavers.get(i));
+            totalSize -= cacheSizes.get(i);
+        }
+        return selected;
     }
 }
@@ -63,4 +63,22 @@ public class CacheProjectAction implements Action {
     public List<Cache> getCaches() {
         return caches;
     }
+
+    /**
+     * Gets the trends of the caches used by the last builds of the job.
+     */
+    public List<CacheTrend> getTrends() {
+        return CacheTrend.of(getJob());
+    }
+
+    /**
+     * @return The hit rate of all given trends in percent, or -1 if there have not been any lookups
+     */
+    public int getHitRate(List<CacheTrend> trends) {
+        return CacheTrend.getHitRate(trends);
+    }
+
+    public int getMaxBuilds() {
+        return CacheTrend.MAX_BUILDS;
+    }
 }
@@ -0,0 +1,17 @@
+package jenkins.plugins.jobcacher;
+
+/**
+ * Decides how the size of a cache is measured when it is checked against a maximum cache size.
+ */
+public enum CacheSizeAccounting {
+
+    /**
+     * Count the size of the cached files before they are archived.
+     */
+    RAW,
+
+    /**
+     * Count the size of the archive as it is stored in the cache storage system.
+     */
+    COMPRESSED
+}
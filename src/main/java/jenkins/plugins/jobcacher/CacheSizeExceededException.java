@@ -0,0 +1,29 @@
+package jenkins.plugins.jobcacher;
+
+import java.io.IOException;
+import java.io.Serial;
+
+/**
+ * Thrown when a cache grows beyond its maximum size while it is saved, so that saving is aborted early.
+ */
+public class CacheSizeExceededException extends IOException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final long maxSize;
+
+    public CacheSizeExceededException(long maxSize) {
+        super("Cache exceeds the maximum size of " + maxSize + " bytes");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the maximum size that has been exceeded.
+     *
+     * @return The maximum size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+}
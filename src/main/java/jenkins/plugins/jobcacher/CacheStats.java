@@ -0,0 +1,250 @@
+package jenkins.plugins.jobcacher;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * The time spent in each phase of restoring and saving a single cache during a build, and the sizes of the cache.
+ * All times are accumulated, as a phase such as the lookup can happen both when the cache is restored and saved.
+ * They may be recorded by a background thread restoring the cache while they are read by the build page or the remote
+ * API, so they are volatile and accumulated under the lock of the statistics.
+ */
+@ExportedBean(defaultVisibility = 2)
+public class CacheStats implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Where the cache has been restored from.
+     */
+    public enum Lookup {
+        /**
+         * The job specific cache has been restored, for a keyed cache the version with the exact key in the job
+         * specific caches or the caches of the default branch.
+         */
+        HIT,
+        /**
+         * The cache of the default branch has been restored, for a keyed cache the most recent version matching a
+         * restore key.
+         */
+        FALLBACK,
+        /**
+         * No up-to-date cache existed.
+         */
+        MISS
+    }
+
+    private final String cache;
+    private volatile Lookup lookup = Lookup.MISS;
+    private volatile boolean restored;
+    private volatile long lookupNanos;
+    private volatile long validityHashingNanos;
+    private volatile long lockWaitNanos;
+    private volatile long scanNanos;
+    private volatile long compressNanos;
+    private volatile long transferNanos;
+    private volatile long extractNanos;
+    private volatile long restoreNanos;
+    private volatile long saveNanos;
+    private volatile long rawBytes;
+    private volatile long compressedBytes;
+
+    public CacheStats(String cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Gets the cache the statistics have been recorded for.
+     *
+     * @return The path of the cache and its name, if any
+     */
+    @Exported
+    public String getCache() {
+        return cache;
+    }
+
+    @Exported
+    public Lookup getLookup() {
+        return lookup;
+    }
+
+    public void setLookup(Lookup lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * Checks whether the cache found by the lookup has been restored, which is not the case if restoring it has been
+     * skipped or has failed.
+     */
+    @Exported
+    public boolean isRestored() {
+        return restored;
+    }
+
+    public void setRestored(boolean restored) {
+        this.restored = restored;
+    }
+
+    /**
+     * Gets the time spent searching for an existing cache, which includes the validity hashing.
+     */
+    @Exported
+    public long getLookupMillis() {
+        return toMillis(lookupNanos);
+    }
+
+    public synchronized void addLookupTime(long nanos) {
+        lookupNanos += nanos;
+    }
+
+    /**
+     * Gets the time spent hashing the files deciding about the validity of the cache.
+     */
+    @Exported
+    public long getValidityHashingMillis() {
+        return toMillis(validityHashingNanos);
+    }
+
+    public synchronized void addValidityHashingTime(long nanos) {
+        validityHashingNanos += nanos;
+    }
+
+    /**
+     * Gets the time spent waiting for other builds of the same job to release the lock of the job's caches.
+     */
+    @Exported
+    public long getLockWaitMillis() {
+        return toMillis(lockWaitNanos);
+    }
+
+    public synchronized void addLockWaitTime(long nanos) {
+        lockWaitNanos += nanos;
+    }
+
+    /**
+     * Gets the time spent listing the files to be cached.
+     */
+    @Exported
+    public long getScanMillis() {
+        return toMillis(scanNanos);
+    }
+
+    public synchronized void addScanTime(long nanos) {
+        scanNanos += nanos;
+    }
+
+    /**
+     * Gets the time spent creating the archive on the agent.
+     */
+    @Exported
+    public long getCompressMillis() {
+        return toMillis(compressNanos);
+    }
+
+    public synchronized void addCompressTime(long nanos) {
+        compressNanos += nanos;
+    }
+
+    /**
+     * Gets the time spent transferring the archive between the agent and the cache storage.
+     */
+    @Exported
+    public long getTransferMillis() {
+        return toMillis(transferNanos);
+    }
+
+    public synchronized void addTransferTime(long nanos) {
+        transferNanos += nanos;
+    }
+
+    /**
+     * Gets the time spent extracting the archive on the agent.
+     */
+    @Exported
+    public long getExtractMillis() {
+        return toMillis(extractNanos);
+    }
+
+    public synchronized void addExtractTime(long nanos) {
+        extractNanos += nanos;
+    }
+
+    /**
+     * Gets the total time spent restoring the cache, which includes transferring and extracting the archive.
+     */
+    @Exported
+    public long getRestoreMillis() {
+        return toMillis(restoreNanos);
+    }
+
+    public synchronized void addRestoreTime(long nanos) {
+        restoreNanos += nanos;
+    }
+
+    /**
+     * Gets the total time spent saving the cache, which includes scanning, compressing and transferring it.
+     */
+    @Exported
+    public long getSaveMillis() {
+        return toMillis(saveNanos);
+    }
+
+    public synchronized void addSaveTime(long nanos) {
+        saveNanos += nanos;
+    }
+
+    /**
+     * Gets the total size of the cached files when the cache was saved.
+     *
+     * @return The size in bytes, or 0 if the cache has not been saved
+     */
+    @Exported
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    public void setRawBytes(long rawBytes) {
+        this.rawBytes = rawBytes;
+    }
+
+    /**
+     * Gets the size of the archive that was created or, if the cache has not been saved, restored.
+     *
+     * @return The size in bytes, or 0 if no archive has been transferred
+     */
+    @Exported
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    public void setCompressedBytes(long compressedBytes) {
+        this.compressedBytes = compressedBytes;
+    }
+
+    /**
+     * Adds the statistics of the shards of the cache, which have been archived, transferred and extracted
+     * concurrently. As the shards overlap, the time of the slowest shard is added for each phase, while the sizes of
+     * the archives are summed up.
+     */
+    public synchronized void addShards(List<CacheStats> shards) {
+        compressNanos += max(shards, shard -> shard.compressNanos);
+        transferNanos += max(shards, shard -> shard.transferNanos);
+        extractNanos += max(shards, shard -> shard.extractNanos);
+        compressedBytes =
+                shards.stream().mapToLong(CacheStats::getCompressedBytes).sum();
+    }
+
+    private static long max(List<CacheStats> shards, ToLongFunction<CacheStats> nanos) {
+        return shards.stream().mapToLong(nanos).max().orElse(0);
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
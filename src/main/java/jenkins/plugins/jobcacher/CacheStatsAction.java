@@ -0,0 +1,89 @@
+package jenkins.plugins.jobcacher;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Holds the {@link CacheStats} of all caches used by a build. They are shown in a table on the build page and
+ * exported through the remote API of the build.
+ */
+@ExportedBean
+public class CacheStatsAction extends InvisibleAction {
+
+    /**
+     * Locks creating the action of a build, striped by the build, so that builds rarely wait for each other and the
+     * monitor of the build, which is also used by core and other plugins, is not held.
+     */
+    private static final Object[] LOCKS = new Object[64];
+
+    static {
+        for (int i = 0; i < LOCKS.length; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    private final List<CacheStats> caches = new CopyOnWriteArrayList<>();
+
+    /**
+     * Gets the action of the build, which is created if it does not exist yet.
+     */
+    public static CacheStatsAction get(Run<?, ?> run) {
+        CacheStatsAction action = run.getAction(CacheStatsAction.class);
+        if (action != null) {
+            return action;
+        }
+
+        synchronized (LOCKS[Math.floorMod(run.getExternalizableId().hashCode(), LOCKS.length)]) {
+            action = run.getAction(CacheStatsAction.class);
+            if (action == null) {
+                action = new CacheStatsAction();
+                run.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    /**
+     * Adds the statistics of a cache to the action of the build, which is created if it does not exist yet.
+     */
+    public static void record(Run<?, ?> run, CacheStats stats) {
+        get(run).add(stats);
+    }
+
+    /**
+     * Adds the statistics of a cache.
+     */
+    public synchronized void add(CacheStats stats) {
+        caches.add(stats);
+    }
+
+    /**
+     * Gets the recorded statistics of the cache the given statistics belong to. Once a build has been resumed, a
+     * {@link Cache.Saver} holds a separate copy of the statistics recorded here, as both are deserialized on their
+     * own, and only the recorded ones are shown and exported.
+     *
+     * @return The statistics most recently recorded for the same cache identifier, or the given ones if they are
+     * recorded themselves or no statistics are recorded for the cache
+     */
+    public synchronized CacheStats resolve(CacheStats stats) {
+        if (caches.contains(stats)) {
+            return stats;
+        }
+        for (int i = caches.size() - 1; i >= 0; i--) {
+            CacheStats recorded = caches.get(i);
+            if (recorded.getCache().equals(stats.getCache())) {
+                return recorded;
+            }
+        }
+        return stats;
+    }
+
+    @Exported(inline = true)
+    public List<CacheStats> getCaches() {
+        return caches;
+    }
+}
@@ -0,0 +1,253 @@
+package jenkins.plugins.jobcacher;
+
+import hudson.Util;
+import hudson.model.Job;
+import hudson.model.Run;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jenkins.util.SystemProperties;
+
+/**
+ * The trend of a single cache over the last completed builds of a job, computed from the {@link CacheStats} that
+ * are persisted with each build. It is shown on the {@link CacheProjectAction} to decide which caches are worth
+ * their transfer cost.
+ */
+public class CacheTrend {
+
+    /**
+     * Number of completed builds the trends are computed from.
+     */
+    static int MAX_BUILDS = SystemProperties.getInteger(CacheTrend.class.getName() + ".maxBuilds", 30);
+
+    /**
+     * The height of the chart in its own coordinates, the width of each bar is 10 with a gap of 2.
+     */
+    static final int CHART_HEIGHT = 100;
+
+    private final String cache;
+    private final List<Build> builds = new ArrayList<>();
+
+    private CacheTrend(String cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Computes the trends of all caches used by the last completed builds of the given job.
+     *
+     * @return The trends, ordered by the caches of the last build first
+     */
+    public static List<CacheTrend> of(Job<?, ?> job) {
+        Map<String, CacheTrend> trends = new LinkedHashMap<>();
+        Run<?, ?> run = job.getLastCompletedBuild();
+        for (int i = 0; i < MAX_BUILDS && run != null; i++, run = run.getPreviousCompletedBuild()) {
+            CacheStatsAction action = run.getAction(CacheStatsAction.class);
+            if (action == null) {
+                continue;
+            }
+
+            for (CacheStats stats : action.getCaches()) {
+                trends.computeIfAbsent(stats.getCache(), CacheTrend::new).builds.add(0, new Build(run, stats));
+            }
+        }
+        return new ArrayList<>(trends.values());
+    }
+
+    /**
+     * Computes the share of all cache lookups of the given trends that restored an existing cache.
+     *
+     * @return The hit rate in percent, or -1 if there have not been any lookups
+     */
+    public static int getHitRate(List<CacheTrend> trends) {
+        int hits = 0;
+        int lookups = 0;
+        for (CacheTrend trend : trends) {
+            hits += trend.getHits();
+            lookups += trend.builds.size();
+        }
+        return lookups == 0 ? -1 : hits * 100 / lookups;
+    }
+
+    public String getCache() {
+        return cache;
+    }
+
+    /**
+     * Gets the builds that used this cache, the oldest first.
+     */
+    public List<Build> getBuilds() {
+        return builds;
+    }
+
+    /**
+     * Gets the number of builds that restored the cache, either their own or the one of the default branch.
+     */
+    public int getHits() {
+        return (int) builds.stream().filter(Build::isHit).count();
+    }
+
+    /**
+     * @return The hit rate in percent
+     */
+    public int getHitRate() {
+        return getHits() * 100 / builds.size();
+    }
+
+    public long getAverageRestoreMillis() {
+        return (long)
+                builds.stream().mapToLong(Build::getRestoreMillis).average().orElse(0);
+    }
+
+    public long getAverageSaveMillis() {
+        return (long) builds.stream().mapToLong(Build::getSaveMillis).average().orElse(0);
+    }
+
+    public long getAverageCompressedBytes() {
+        return (long) builds.stream()
+                .mapToLong(Build::getCompressedBytes)
+                .filter(bytes -> bytes > 0)
+                .average()
+                .orElse(0);
+    }
+
+    /**
+     * Estimates the time saved by this cache, which is the difference between the average duration of builds that
+     * missed and hit the cache, multiplied by the number of hits. The time spent restoring and saving the cache is
+     * part of the build durations already.
+     *
+     * @return The estimated time, or null if there have not been both hits and misses
+     */
+    public String getEstimatedTimeSaved() {
+        double hitDuration = builds.stream()
+                .filter(Build::isHit)
+                .mapToLong(Build::getDurationMillis)
+                .average()
+                .orElse(Double.NaN);
+        double missDuration = builds.stream()
+                .filter(build -> !build.isHit())
+                .mapToLong(Build::getDurationMillis)
+                .average()
+                .orElse(Double.NaN);
+        if (Double.isNaN(hitDuration) || Double.isNaN(missDuration)) {
+            return null;
+        }
+
+        long saved = (long) ((missDuration - hitDuration) * getHits());
+        return saved < 0 ? "-" + Util.getTimeSpanString(-saved) : Util.getTimeSpanString(saved);
+    }
+
+    /**
+     * Gets the width of the chart in its own coordinates.
+     */
+    public int getChartWidth() {
+        return builds.size() * 12;
+    }
+
+    /**
+     * Gets the bars of the chart, which stack the restore and the save duration of each build.
+     */
+    public List<Bar> getBars() {
+        long max = builds.stream()
+                .mapToLong(build -> build.getRestoreMillis() + build.getSaveMillis())
+                .max()
+                .orElse(0);
+        List<Bar> bars = new ArrayList<>();
+        for (int i = 0; i < builds.size(); i++) {
+            bars.add(new Bar(i * 12 + 1, builds.get(i), Math.max(max, 1)));
+        }
+        return bars;
+    }
+
+    /**
+     * The statistics of the cache in a single build.
+     */
+    public static class Build {
+
+        private final int number;
+        private final String url;
+        private final long durationMillis;
+        private final CacheStats stats;
+
+        Build(Run<?, ?> run, CacheStats stats) {
+            this.number = run.getNumber();
+            this.url = run.getUrl();
+            this.durationMillis = run.getDuration();
+            this.stats = stats;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public CacheStats.Lookup getLookup() {
+            return stats.getLookup();
+        }
+
+        public boolean isHit() {
+            return stats.getLookup() != CacheStats.Lookup.MISS;
+        }
+
+        public long getRestoreMillis() {
+            return stats.getRestoreMillis();
+        }
+
+        public long getSaveMillis() {
+            return stats.getSaveMillis();
+        }
+
+        public long getCompressedBytes() {
+            return stats.getCompressedBytes();
+        }
+    }
+
+    /**
+     * A bar of the chart in its own coordinates, where the restore duration is drawn at the bottom.
+     */
+    public static class Bar {
+
+        private final int x;
+        private final Build build;
+        private final int restoreHeight;
+        private final int saveHeight;
+
+        Bar(int x, Build build, long max) {
+            this.x = x;
+            this.build = build;
+            this.restoreHeight = (int) (build.getRestoreMillis() * CHART_HEIGHT / max);
+            this.saveHeight = (int) (build.getSaveMillis() * CHART_HEIGHT / max);
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public Build getBuild() {
+            return build;
+        }
+
+        public int getRestoreY() {
+            return CHART_HEIGHT - restoreHeight;
+        }
+
+        public int getRestoreHeight() {
+            return restoreHeight;
+        }
+
+        public int getSaveY() {
+            return CHART_HEIGHT - restoreHeight - saveHeight;
+        }
+
+        public int getSaveHeight() {
+            return saveHeight;
+        }
+    }
+}
@@ -34,6 +34,7 @@ import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.tasks.BuildWrapperDescriptor;
+import hudson.util.ListBoxModel;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -55,6 +56,8 @@ import org.kohsuke.stapler.DataBoundSetter;
 public class CacheWrapper extends SimpleBuildWrapper {
 
     private Long maxCacheSize;
+    private MaxCacheSizePolicy maxCacheSizePolicy;
+    private CacheSizeAccounting maxCacheSizeAccounting;
     private boolean skipSave;
     private boolean skipRestore;
     private List<Cache> caches;
@@ -81,6 +84,28 @@ public class CacheWrapper extends SimpleBuildWrapper {
         this.maxCacheSize = maxCacheSize;
     }
 
+    @SuppressWarnings("unused")
+    public MaxCacheSizePolicy getMaxCacheSizePolicy() {
+        return maxCacheSizePolicy;
+    }
+
+    @DataBoundSetter
+    @SuppressWarnings("unused")
+    public void setMaxCacheSizePolicy(MaxCacheSizePolicy maxCacheSizePolicy) {
+        this.maxCacheSizePolicy = maxCacheSizePolicy;
+    }
+
+    @SuppressWarnings("unused")
+    public CacheSizeAccounting getMaxCacheSizeAccounting() {
+        return maxCacheSizeAccounting;
+    }
+
+    @DataBoundSetter
+    @SuppressWarnings("unused")
+    public void setMaxCacheSizeAccounting(CacheSizeAccounting maxCacheSizeAccounting) {
+        this.maxCacheSizeAccounting = maxCacheSizeAccounting;
+    }
+
     @SuppressWarnings("unused")
     public boolean getSkipSave() {
         return skipSave;
@@ -142,7 +167,14 @@ public class CacheWrapper extends SimpleBuildWrapper {
                 skipRestore);
 
         context.setDisposer(new CacheDisposer(
-                getStorage(), getMaxCacheSize(), getSkipSave(), getCaches(), cacheSavers, defaultBranch));
+                getStorage(),
+                getMaxCacheSize(),
+                getMaxCacheSizePolicy(),
+                getMaxCacheSizeAccounting(),
+                getSkipSave(),
+                getCaches(),
+                cacheSavers,
+                defaultBranch));
     }
 
     private static <T> List<T> wrapList(List<T> list, Function<List<T>, List<T>> listFactory) {
@@ -173,6 +205,26 @@ public class CacheWrapper extends SimpleBuildWrapper {
                 return Collections.emptyList();
             }
         }
+
+        @SuppressWarnings("unused")
+        public ListBoxModel doFillMaxCacheSizePolicyItems() {
+            ListBoxModel items = new ListBoxModel();
+            for (MaxCacheSizePolicy policy : MaxCacheSizePolicy.values()) {
+                items.add(policy.name());
+            }
+
+            return items;
+        }
+
+        @SuppressWarnings("unused")
+        public ListBoxModel doFillMaxCacheSizeAccountingItems() {
+            ListBoxModel items = new ListBoxModel();
+            for (CacheSizeAccounting accounting : CacheSizeAccounting.values()) {
+                items.add(accounting.name());
+            }
+
+            return items;
+        }
     }
 
     private static class CacheDisposer extends Disposer {
@@ -181,6 +233,8 @@ public class CacheWrapper extends SimpleBuildWrapper {
 
         private final ItemStorage<?> storage;
         private final Long maxCacheSize;
+        private final MaxCacheSizePolicy maxCacheSizePolicy;
+        private final CacheSizeAccounting maxCacheSizeAccounting;
         private final boolean skipSave;
         private final List<Cache> caches;
         private final List<Cache.Saver> cacheSavers;
@@ -190,12 +244,16 @@ public class CacheWrapper extends SimpleBuildWrapper {
         public CacheDisposer(
                 ItemStorage<?> storage,
                 Long maxCacheSize,
+                MaxCacheSizePolicy maxCacheSizePolicy,
+                CacheSizeAccounting maxCacheSizeAccounting,
                 boolean skipSave,
                 List<Cache> caches,
                 List<Cache.Saver> cacheSavers,
                 String defaultBranch) {
             this.storage = storage;
             this.maxCacheSize = maxCacheSize;
+            this.maxCacheSizePolicy = maxCacheSizePolicy;
+            this.maxCacheSizeAccounting = maxCacheSizeAccounting;
             this.skipSave = skipSave;
             this.caches = caches;
             this.cacheSavers = cacheSavers;
@@ -213,6 +271,8 @@ public class CacheWrapper extends SimpleBuildWrapper {
                         launcher,
                         listener,
                         maxCacheSize,
+                        maxCacheSizePolicy,
+                        maxCacheSizeAccounting,
                         caches,
                         cacheSavers,
                         defaultBranch);
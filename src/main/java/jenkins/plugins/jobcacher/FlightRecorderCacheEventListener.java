@@ -0,0 +1,82 @@
+package jenkins.plugins.jobcacher;
+
+import hudson.Extension;
+import hudson.model.Run;
+import java.util.Locale;
+import jdk.jfr.Event;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Emits the {@link CacheEvents} of the controller for the operations and the caches of builds. An event begins when
+ * the operation is started and is committed when it is finished, which both happen on the same thread.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class FlightRecorderCacheEventListener extends CacheEventListener {
+
+    private final ThreadLocal<CacheEvents.Operation> operation = new ThreadLocal<>();
+    private final ThreadLocal<CacheEvents.Restore> restore = new ThreadLocal<>();
+    private final ThreadLocal<CacheEvents.Save> save = new ThreadLocal<>();
+
+    @Override
+    public void onOperationStarted(OperationStarted event) {
+        begin(operation, new CacheEvents.Operation());
+    }
+
+    @Override
+    public void onOperationFinished(OperationFinished event) {
+        CacheEvents.Operation jfrEvent = end(operation);
+        if (jfrEvent != null && jfrEvent.shouldCommit()) {
+            jfrEvent.job = event.run().getParent().getFullName();
+            jfrEvent.operation = event.operation().name().toLowerCase(Locale.ROOT);
+            jfrEvent.caches = event.caches();
+            jfrEvent.commit();
+        }
+    }
+
+    @Override
+    public void onRestoreStarted(RestoreStarted event) {
+        begin(restore, new CacheEvents.Restore());
+    }
+
+    @Override
+    public void onRestoreFinished(RestoreFinished event) {
+        commit(end(restore), event.run(), event.cache(), event.compressionMethod(), event.bytes());
+    }
+
+    @Override
+    public void onSaveStarted(SaveStarted event) {
+        begin(save, new CacheEvents.Save());
+    }
+
+    @Override
+    public void onSaveFinished(SaveFinished event) {
+        commit(end(save), event.run(), event.cache(), event.compressionMethod(), event.bytes());
+    }
+
+    private static <T extends Event> void begin(ThreadLocal<T> current, T jfrEvent) {
+        // the event is only timed if it is enabled, so it can be left out otherwise
+        if (jfrEvent.isEnabled()) {
+            jfrEvent.begin();
+            current.set(jfrEvent);
+        }
+    }
+
+    private static <T extends Event> T end(ThreadLocal<T> current) {
+        T jfrEvent = current.get();
+        current.remove();
+        return jfrEvent;
+    }
+
+    private static void commit(
+            CacheEvents.CacheEvent jfrEvent, Run<?, ?> run, String cache, String compressionMethod, long bytes) {
+        if (jfrEvent != null && jfrEvent.shouldCommit()) {
+            jfrEvent.job = run.getParent().getFullName();
+            jfrEvent.cache = cache;
+            jfrEvent.compressionMethod = compressionMethod;
+            jfrEvent.bytes = bytes;
+            jfrEvent.commit();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package jenkins.plugins.jobcacher;
+
+/**
+ * Decides which caches are removed when the total size of all caches of a job exceeds the configured maximum.
+ */
+public enum MaxCacheSizePolicy {
+
+    /**
+     * Remove all caches of the job, so that the next build starts without any cache.
+     */
+    CLEAR_ALL,
+
+    /**
+     * Remove the largest caches until the total size is below the maximum again and save the remaining ones.
+     */
+    EVICT_LARGEST
+}
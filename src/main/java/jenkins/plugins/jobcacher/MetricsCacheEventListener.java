@@ -0,0 +1,91 @@
+package jenkins.plugins.jobcacher;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import hudson.Extension;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.metrics.api.Metrics;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Publishes instance-wide metrics of all caches in the registry of the Metrics plugin, from where they are picked up
+ * by its reporters, for instance the Prometheus plugin. It is only loaded if the Metrics plugin is installed.
+ */
+@Extension(optional = true)
+@Restricted(NoExternalUse.class)
+public class MetricsCacheEventListener extends CacheEventListener {
+
+    private static final String PREFIX = "jobcacher";
+
+    private final AtomicLong activeOperations = new AtomicLong();
+    private final AtomicLong storageUsage = new AtomicLong(-1);
+
+    public MetricsCacheEventListener() {
+        MetricRegistry registry = Metrics.metricRegistry();
+        registry.gauge(MetricRegistry.name(PREFIX, "operations", "active"), () -> (Gauge<Long>) activeOperations::get);
+        registry.gauge(MetricRegistry.name(PREFIX, "storage", "bytes"), () -> (Gauge<Long>) storageUsage::get);
+    }
+
+    @Override
+    public void onLookupResolved(LookupResolved event) {
+        Metrics.metricRegistry()
+                .counter(MetricRegistry.name(
+                        PREFIX, "lookup", event.lookup().name().toLowerCase(Locale.ROOT)))
+                .inc();
+    }
+
+    @Override
+    public void onRestoreStarted(RestoreStarted event) {
+        activeOperations.incrementAndGet();
+    }
+
+    @Override
+    public void onRestoreFinished(RestoreFinished event) {
+        activeOperations.decrementAndGet();
+        if (event.successful()) {
+            record("restore", event.compressionMethod(), event.duration(), event.bytes());
+        }
+    }
+
+    @Override
+    public void onSaveStarted(SaveStarted event) {
+        activeOperations.incrementAndGet();
+    }
+
+    @Override
+    public void onSaveFinished(SaveFinished event) {
+        activeOperations.decrementAndGet();
+        if (event.successful()) {
+            record("save", event.compressionMethod(), event.duration(), event.bytes());
+        }
+    }
+
+    @Override
+    public void onLockAcquired(LockAcquired event) {
+        Metrics.metricRegistry()
+                .timer(MetricRegistry.name(PREFIX, "lock", "wait"))
+                .update(event.duration(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onStorageMeasured(StorageMeasured event) {
+        storageUsage.set(event.bytes());
+    }
+
+    @Override
+    public boolean needsStorageSize() {
+        return true;
+    }
+
+    private static void record(String operation, String compressionMethod, long nanos, long bytes) {
+        MetricRegistry registry = Metrics.metricRegistry();
+        if (compressionMethod != null) {
+            registry.timer(MetricRegistry.name(PREFIX, operation, compressionMethod.toLowerCase(Locale.ROOT)))
+                    .update(nanos, TimeUnit.NANOSECONDS);
+        }
+        registry.meter(MetricRegistry.name(PREFIX, operation, "bytes")).mark(bytes);
+    }
+}
@@ -1,8 +1,12 @@
 package jenkins.plugins.jobcacher.arbitrary;
 
 import hudson.FilePath;
+import java.io.File;
 import java.io.IOException;
 import jenkins.plugins.itemstorage.ObjectPath;
+import jenkins.plugins.jobcacher.CacheEvents;
+import jenkins.plugins.jobcacher.CacheSizeAccounting;
+import jenkins.plugins.jobcacher.CacheStats;
 import jenkins.plugins.jobcacher.arbitrary.WorkspaceHelper.TempFile;
 
 public abstract class AbstractCompressingArbitraryFileCacheStrategy implements ArbitraryFileCacheStrategy {
@@ -13,28 +17,68 @@ public abstract class AbstractCompressingArbitraryFileCacheStrategy implements A
     }
 
     @Override
-    public void cache(
+    public long cache(
             FilePath localSource,
-            String includes,
-            String excludes,
-            boolean useDefaultExcludes,
+            FilePath manifest,
             ObjectPath remoteTarget,
-            FilePath workspace)
+            ObjectPath remoteIndex,
+            FilePath workspace,
+            long maxSize,
+            CacheSizeAccounting accounting,
+            CacheStats stats)
             throws IOException, InterruptedException {
-        try (TempFile localTarget = WorkspaceHelper.createTempFile(workspace, getArchiveExtension())) {
-            compress(localSource, includes, excludes, useDefaultExcludes, localTarget.get());
+        try (TempFile localTarget = WorkspaceHelper.createTempFile(workspace, getArchiveExtension());
+                TempFile localIndex =
+                        isIndexed() ? WorkspaceHelper.createTempFile(workspace, CacheIndex.EXTENSION) : null) {
+            long startTime = System.nanoTime();
+            long size = compress(
+                    localSource,
+                    manifest,
+                    localTarget.get(),
+                    localIndex != null ? localIndex.get() : null,
+                    maxSize,
+                    accounting);
+            stats.addCompressTime(System.nanoTime() - startTime);
+            stats.setCompressedBytes(localTarget.get().length());
+
+            startTime = System.nanoTime();
             remoteTarget.copyFrom(localTarget.get());
+            if (localIndex != null) {
+                remoteIndex.copyFrom(localIndex.get());
+            }
+            stats.addTransferTime(System.nanoTime() - startTime);
+            return size;
         }
     }
 
     @Override
-    public void restore(ObjectPath remoteSource, FilePath localTarget, FilePath workspace)
+    public void restore(ObjectPath remoteSource, FilePath localTarget, FilePath workspace, CacheStats stats)
             throws IOException, InterruptedException {
         localTarget.mkdirs();
 
         try (TempFile localSource = WorkspaceHelper.createTempFile(workspace, getArchiveExtension())) {
+            long startTime = System.nanoTime();
             remoteSource.copyTo(localSource.get());
+            stats.addTransferTime(System.nanoTime() - startTime);
+            stats.setCompressedBytes(localSource.get().length());
+
+            startTime = System.nanoTime();
             uncompress(localSource.get(), localTarget);
+            stats.addExtractTime(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Commits the event of creating or extracting an archive on the agent, if it is enabled.
+     */
+    static void commitArchiveEvent(
+            CacheEvents.Archive event, String operation, String format, FilePath directory, File archive) {
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.format = format;
+            event.directory = directory.getRemote();
+            event.bytes = archive.length();
+            event.commit();
         }
     }
 
@@ -42,7 +86,19 @@ public abstract class AbstractCompressingArbitraryFileCacheStrategy implements A
 
     protected abstract void uncompress(FilePath source, FilePath target) throws IOException, InterruptedException;
 
-    protected abstract void compress(
-            FilePath source, String includes, String excludes, boolean useDefaultExcludes, FilePath target)
+    /**
+     * Archives the entries of the source listed in the manifest to the target.
+     *
+     * @param index The file the {@link CacheIndex} of the archive is written to, or null if the strategy is not
+     *              {@link #isIndexed()}
+     * @return The size of the archive in bytes measured with the given accounting, or 0 if the size is not limited
+     */
+    protected abstract long compress(
+            FilePath source,
+            FilePath manifest,
+            FilePath target,
+            FilePath index,
+            long maxSize,
+            CacheSizeAccounting accounting)
             throws IOException, InterruptedException;
 }
@@ -4,19 +4,74 @@ import hudson.FilePath;
 import java.io.IOException;
 import java.io.Serializable;
 import jenkins.plugins.itemstorage.ObjectPath;
+import jenkins.plugins.jobcacher.CacheSizeAccounting;
+import jenkins.plugins.jobcacher.CacheStats;
+import org.kohsuke.stapler.HttpResponse;
 
 public interface ArbitraryFileCacheStrategy extends Serializable {
 
     String createCacheName(String basename);
 
-    void cache(
+    /**
+     * Archives the entries of the source listed in the manifest to the target, aborting with a
+     * {@link jenkins.plugins.jobcacher.CacheSizeExceededException} as soon as the archive grows beyond the maximum size.
+     *
+     * @param manifest The file on the agent where the {@link CacheManifest} of the source has been written to
+     * @param index The path where the {@link CacheIndex} of the archive is stored, if the strategy is {@link #isIndexed()}
+     * @param stats The statistics to which the time spent compressing and transferring the archive is added
+     * @return The size of the archive in bytes measured with the given accounting, or 0 if the size is not limited
+     */
+    long cache(
             FilePath source,
-            String includes,
-            String excludes,
-            boolean useDefaultExcludes,
+            FilePath manifest,
             ObjectPath target,
-            FilePath workspace)
+            ObjectPath index,
+            FilePath workspace,
+            long maxSize,
+            CacheSizeAccounting accounting,
+            CacheStats stats)
             throws IOException, InterruptedException;
 
-    void restore(ObjectPath source, FilePath target, FilePath workspace) throws IOException, InterruptedException;
+    /**
+     * Restores the archive from the source to the target.
+     *
+     * @param stats The statistics to which the time spent transferring and extracting the archive is added
+     */
+    void restore(ObjectPath source, FilePath target, FilePath workspace, CacheStats stats)
+            throws IOException, InterruptedException;
+
+    /**
+     * Restores only the entries of an archive matching the given patterns, reading just the parts of the archive
+     * holding them if possible.
+     *
+     * @param source The archive
+     * @param index The path where the {@link CacheIndex} of the archive is stored
+     * @param includes The comma-separated patterns of the entries to restore, relative to the target
+     * @return true if the entries have been restored, false if the archive can only be restored as a whole
+     */
+    default boolean restore(
+            ObjectPath source, ObjectPath index, String includes, FilePath target, FilePath workspace, CacheStats stats)
+            throws IOException, InterruptedException {
+        return false;
+    }
+
+    /**
+     * Checks whether a {@link CacheIndex} is stored next to each archive of this strategy.
+     */
+    default boolean isIndexed() {
+        return false;
+    }
+
+    /**
+     * Browses the contents of an archive, listing its directories and files and downloading single files.
+     *
+     * @param source The archive
+     * @param index The path where the {@link CacheIndex} of the archive is stored
+     * @param title The title of the pages
+     * @return The response, or null if the archive can only be browsed as a whole
+     */
+    default HttpResponse browse(ObjectPath source, ObjectPath index, String title)
+            throws IOException, InterruptedException {
+        return null;
+    }
 }
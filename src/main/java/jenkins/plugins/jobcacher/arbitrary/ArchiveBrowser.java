@@ -0,0 +1,129 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import hudson.Util;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+
+/**
+ * Browses the contents of a TAR archive using its {@link CacheIndex}. Directories are listed from the index alone,
+ * single files are downloaded by streaming just their entry of the archive.
+ */
+public class ArchiveBrowser implements HttpResponse {
+
+    private final CacheIndex index;
+    private final TarStreamFactory tarStreamFactory;
+    private final String title;
+
+    /**
+     * @param index The index of the archive
+     * @param tarStreamFactory Opens the uncompressed TAR stream of the archive at the offset of an entry
+     * @param title The title of the pages
+     */
+    public ArchiveBrowser(CacheIndex index, TarStreamFactory tarStreamFactory, String title) {
+        this.index = index;
+        this.tarStreamFactory = tarStreamFactory;
+        this.title = title;
+    }
+
+    @Override
+    public void generateResponse(StaplerRequest2 req, StaplerResponse2 rsp, Object node)
+            throws IOException, ServletException {
+        String path = StringUtils.strip(req.getRestOfPath(), "/");
+
+        CacheIndex.Entry entry = index.get(path);
+        if (entry != null && !entry.isSymlink()) {
+            download(entry, rsp);
+            return;
+        }
+
+        List<CacheIndex.Node> children = index.list(path);
+        if (entry != null || children == null) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        if (!req.getRequestURI().endsWith("/")) {
+            rsp.sendRedirect2(req.getRequestURI() + "/");
+            return;
+        }
+        req.getView(new Directory(title, path, children), "index.jelly").forward(req, rsp);
+    }
+
+    private void download(CacheIndex.Entry entry, StaplerResponse2 rsp) throws IOException {
+        try (InputStream inputStream = tarStreamFactory.open(entry.offset());
+                TarArchiveInputStream tarInputStream = new TarArchiveInputStream(inputStream)) {
+            ArchiveEntry tarEntry = tarInputStream.getNextEntry();
+            if (tarEntry == null || !entry.relativePath().equals(tarEntry.getName())) {
+                throw new IOException("The index does not match the archive at " + entry.relativePath());
+            }
+
+            String name = StringUtils.substringAfterLast("/" + entry.relativePath(), "/");
+            rsp.setContentType("application/octet-stream");
+            rsp.setHeader("Content-Disposition", "attachment; filename*=UTF-8''" + Util.rawEncode(name));
+            rsp.setContentLengthLong(entry.size());
+            IOUtils.copy(tarInputStream, rsp.getOutputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Opens the uncompressed TAR stream of an archive.
+     */
+    @FunctionalInterface
+    public interface TarStreamFactory {
+
+        /**
+         * @param offset The offset in the uncompressed TAR stream at which the stream starts
+         * @return The stream, which must be closed by the caller
+         */
+        InputStream open(long offset) throws IOException, InterruptedException;
+    }
+
+    /**
+     * A directory of the archive, which is rendered by its own view.
+     */
+    public static class Directory {
+
+        private final String title;
+        private final String path;
+        private final List<CacheIndex.Node> children;
+
+        Directory(String title, String path, List<CacheIndex.Node> children) {
+            this.title = title;
+            this.path = path;
+            this.children = children;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * @return The path of the directory relative to the cached directory, or an empty string for the cached
+         *         directory itself
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public List<CacheIndex.Node> getChildren() {
+            return children;
+        }
+
+        public String encode(String name) {
+            return Util.rawEncode(name);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * The entries of a TAR archive of a cache, which is stored next to the archive so that the contents of the cache can
+ * be listed without reading the archive. Each entry records the offset of its headers in the uncompressed TAR
+ * stream, so that a single entry can be read by skipping everything before it.
+ */
+public final class CacheIndex {
+
+    /**
+     * The extension appended to the name of the archive to get the name of its index.
+     */
+    public static final String EXTENSION = ".index";
+
+    private static final int VERSION = 1;
+
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByPath = new HashMap<>();
+
+    CacheIndex(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+        for (Entry entry : entries) {
+            entriesByPath.put(entry.relativePath(), entry);
+        }
+    }
+
+    /**
+     * Reads an index previously written by {@link #write(OutputStream)}.
+     */
+    public static CacheIndex read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported cache index version " + version);
+        }
+
+        int count = in.readInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String relativePath = in.readUTF();
+            long size = in.readLong();
+            long offset = in.readLong();
+            String linkTarget = in.readUTF();
+            entries.add(new Entry(relativePath, size, offset, linkTarget.isEmpty() ? null : linkTarget));
+        }
+        return new CacheIndex(entries);
+    }
+
+    /**
+     * Writes the index, the stream is flushed but not closed.
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeUTF(entry.relativePath());
+            out.writeLong(entry.size());
+            out.writeLong(entry.offset());
+            out.writeUTF(entry.linkTarget() == null ? "" : entry.linkTarget());
+        }
+        out.flush();
+    }
+
+    /**
+     * Gets the entries in the order in which they are stored in the archive.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Gets the entry of a file or symlink.
+     *
+     * @param relativePath The path relative to the cached directory, separated by {@code /}
+     * @return The entry, or null if there is no such file or symlink
+     */
+    public Entry get(String relativePath) {
+        return entriesByPath.get(relativePath);
+    }
+
+    /**
+     * Lists the files, symlinks and directories directly within a directory of the cache. Directories are not stored
+     * in the archive, they are derived from the paths of the entries.
+     *
+     * @param directory The path of the directory relative to the cached directory, or an empty string for the cached
+     *                  directory itself
+     * @return The children in the order of their names, or null if there is no such directory
+     */
+    public List<Node> list(String directory) {
+        String prefix = directory.isEmpty() ? "" : directory + "/";
+        Map<String, Node> children = new TreeMap<>();
+        for (Entry entry : entries) {
+            if (!entry.relativePath().startsWith(prefix)) {
+                continue;
+            }
+
+            String rest = entry.relativePath().substring(prefix.length());
+            int separator = rest.indexOf('/');
+            if (separator < 0) {
+                children.put(rest, new Node(rest, entry));
+            } else {
+                children.computeIfAbsent(rest.substring(0, separator), Node::new)
+                        .add(entry);
+            }
+        }
+
+        if (children.isEmpty() && !directory.isEmpty()) {
+            return null;
+        }
+        return new ArrayList<>(children.values());
+    }
+
+    /**
+     * Selects the parts of the uncompressed TAR stream holding the entries matching the filter. An entry ends where
+     * the next one starts, so adjacent matching entries are merged into a single range.
+     *
+     * @return The ranges in the order of their offsets, the length of the last one is -1 if it extends to the end of
+     *         the stream
+     */
+    public List<Range> select(Predicate<Entry> filter) {
+        List<Range> ranges = new ArrayList<>();
+        long start = -1;
+        for (Entry entry : entries) {
+            if (filter.test(entry)) {
+                if (start < 0) {
+                    start = entry.offset();
+                }
+            } else if (start >= 0) {
+                ranges.add(new Range(start, entry.offset() - start));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            ranges.add(new Range(start, -1));
+        }
+        return ranges;
+    }
+
+    /**
+     * A file or symlink of the archive.
+     *
+     * @param relativePath The path relative to the cached directory, separated by {@code /}
+     * @param size The size in bytes, or 0 for symlinks
+     * @param offset The offset of the headers of the entry in the uncompressed TAR stream
+     * @param linkTarget The target of the symlink, or null if the entry is a file
+     */
+    public record Entry(String relativePath, long size, long offset, String linkTarget) {
+
+        public boolean isSymlink() {
+            return linkTarget != null;
+        }
+    }
+
+    /**
+     * A part of the uncompressed TAR stream selected by {@link #select(Predicate)}.
+     *
+     * @param offset The offset of the first byte
+     * @param length The number of bytes, or -1 to read until the end of the stream
+     */
+    public record Range(long offset, long length) {}
+
+    /**
+     * A child of a directory listed by {@link #list(String)}.
+     */
+    public static class Node {
+
+        private final String name;
+        private final Entry entry;
+        private long size;
+        private int files;
+
+        private Node(String name) {
+            this.name = name;
+            this.entry = null;
+        }
+
+        private Node(String name, Entry entry) {
+            this.name = name;
+            this.entry = entry;
+            this.size = entry.size();
+            this.files = 1;
+        }
+
+        private void add(Entry entry) {
+            size += entry.size();
+            files++;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return entry == null;
+        }
+
+        /**
+         * @return The target of the symlink, or null if this is a file or directory
+         */
+        public String getLinkTarget() {
+            return entry == null ? null : entry.linkTarget();
+        }
+
+        /**
+         * @return The size of the file, or the total size of all files within the directory
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return 1 for files and symlinks, or the number of files and symlinks within the directory
+         */
+        public int getFiles() {
+            return files;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import hudson.FilePath;
+import hudson.Util;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import jenkins.plugins.itemstorage.ObjectPath;
+
+/**
+ * The keys of the versions of a keyed cache, which are stored in a keys file next to the versions, one key per line
+ * and the most recently saved version first. Each version is stored under its own base name derived from its key, so
+ * that versions are found without listing the stored caches.
+ */
+public final class CacheKeys {
+
+    /**
+     * The extension appended to the base name of the cache to get the name of the keys file.
+     */
+    public static final String EXTENSION = ".keys";
+
+    private final ObjectPath cachesRoot;
+    private final String baseName;
+
+    /**
+     * @param cachesRoot The path the caches of the job are stored at
+     * @param baseName The base name of the cache
+     */
+    public CacheKeys(ObjectPath cachesRoot, String baseName) {
+        this.cachesRoot = cachesRoot;
+        this.baseName = baseName;
+    }
+
+    /**
+     * Gets the path of the keys file.
+     */
+    public ObjectPath getPath() throws IOException, InterruptedException {
+        return cachesRoot.child(baseName + EXTENSION);
+    }
+
+    /**
+     * Gets the base name of the version of the cache with the given key.
+     */
+    public String getBaseName(String key) {
+        return baseName + "-" + Util.getDigestOf(key);
+    }
+
+    /**
+     * Reads the keys of all versions. The keys file is small, so it is read on the controller.
+     *
+     * @return The keys with the most recently saved version first, or an empty list if no version exists
+     */
+    public List<String> read() throws IOException, InterruptedException {
+        ObjectPath path = getPath();
+        if (!path.exists()) {
+            return new ArrayList<>();
+        }
+
+        File tempFile = Files.createTempFile("cache", EXTENSION).toFile();
+        try {
+            path.copyTo(new FilePath(tempFile));
+            return Files.readAllLines(tempFile.toPath(), StandardCharsets.UTF_8).stream()
+                    .filter(key -> !key.isEmpty())
+                    .collect(Collectors.toCollection(ArrayList::new));
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Records the version with the given key as the most recently saved one and drops the oldest versions beyond the
+     * given number of retained versions.
+     *
+     * @param retainedVersions The number of versions to retain
+     * @return The keys of the dropped versions, whose caches are to be deleted by the caller
+     */
+    public List<String> add(String key, int retainedVersions) throws IOException, InterruptedException {
+        List<String> keys = read();
+        keys.remove(key);
+        keys.add(0, key);
+
+        List<String> dropped = new ArrayList<>();
+        while (keys.size() > Math.max(retainedVersions, 1)) {
+            dropped.add(keys.remove(keys.size() - 1));
+        }
+
+        File tempFile = Files.createTempFile("cache", EXTENSION).toFile();
+        try {
+            Files.write(tempFile.toPath(), keys, StandardCharsets.UTF_8);
+            getPath().copyFrom(new FilePath(tempFile));
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+        return dropped;
+    }
+
+    /**
+     * Deletes the keys file, if any.
+     */
+    public void delete() throws IOException, InterruptedException {
+        ObjectPath path = getPath();
+        if (path.exists()) {
+            path.deleteRecursive();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import jenkins.agents.ControllerToAgentFileCallable;
+import jenkins.plugins.jobcacher.CacheSizeAccounting;
+
+/**
+ * The entries of a cached directory matching the includes/excludes patterns, listed once per save on the agent and
+ * then used for both the size check and the archive, so that the directory is walked a single time. Real files and
+ * symlinks are recorded in the order in which {@link SymlinkSafeDirScanner} passes them to the archiver.
+ *
+ * <p>The manifest is stored in a temporary file next to the workspace while the cache is saved, as it can be too
+ * large to be transferred to the controller.
+ */
+public final class CacheManifest {
+
+    private static final int VERSION = 1;
+
+    private final List<Entry> files;
+    private final List<Entry> symlinks;
+    private final long size;
+
+    private CacheManifest(List<Entry> files, List<Entry> symlinks) {
+        this.files = Collections.unmodifiableList(files);
+        this.symlinks = Collections.unmodifiableList(symlinks);
+        this.size = files.stream().mapToLong(Entry::size).sum();
+    }
+
+    /**
+     * Lists the real files and the symlinks of a directory matching the patterns.
+     *
+     * @param dir The directory to list
+     * @param includes The comma-separated include patterns
+     * @param excludes The comma-separated exclude patterns, may be null
+     * @param useDefaultExcludes Whether Ant's default excludes are applied
+     * @return The manifest of the directory
+     */
+    public static CacheManifest scan(File dir, String includes, String excludes, boolean useDefaultExcludes)
+            throws IOException {
+        List<Entry> files = new ArrayList<>();
+        List<Entry> symlinks = new ArrayList<>();
+        CachePatterns.compile(dir, includes, excludes, useDefaultExcludes)
+                .walk(
+                        dir,
+                        false,
+                        (relativePath, attributes) -> files.add(Entry.of(relativePath, attributes)),
+                        CachePatterns.compileRaw(includes, excludes, useDefaultExcludes),
+                        (relativePath, attributes) -> symlinks.add(Entry.of(relativePath, attributes)));
+
+        return new CacheManifest(files, symlinks);
+    }
+
+    /**
+     * Reads a manifest previously written by {@link #write(OutputStream)}.
+     */
+    public static CacheManifest read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported cache manifest version " + version);
+        }
+
+        return new CacheManifest(readEntries(in), readEntries(in));
+    }
+
+    /**
+     * Reads a manifest previously written to a file by {@link CreateCallable}.
+     */
+    public static CacheManifest read(FilePath file) throws IOException, InterruptedException {
+        try (InputStream inputStream = file.read()) {
+            return read(inputStream);
+        }
+    }
+
+    /**
+     * Writes the manifest, the stream is flushed but not closed.
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(VERSION);
+        writeEntries(out, files);
+        writeEntries(out, symlinks);
+        out.flush();
+    }
+
+    /**
+     * Gets the real files in sorted order of their relative paths.
+     */
+    public List<Entry> getFiles() {
+        return files;
+    }
+
+    /**
+     * Gets the symlinks in sorted order of their relative paths.
+     */
+    public List<Entry> getSymlinks() {
+        return symlinks;
+    }
+
+    /**
+     * Gets the raw size of the cache, which is the total size of all real files. Symlinks are archived as links and
+     * do not contribute to the size.
+     *
+     * @return The size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Splits the manifest into manifests of about the same raw size, by adding the largest files first to the
+     * smallest manifest. The entries of each manifest stay in sorted order.
+     *
+     * @param count The number of manifests
+     * @return The manifests, some of which are empty if there are fewer files than manifests
+     */
+    List<CacheManifest> split(int count) {
+        List<List<Entry>> files = new ArrayList<>();
+        List<List<Entry>> symlinks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            files.add(new ArrayList<>());
+            symlinks.add(new ArrayList<>());
+        }
+
+        long[] sizes = new long[count];
+        List<Entry> largestFirst = new ArrayList<>(this.files);
+        largestFirst.sort(Comparator.comparingLong(Entry::size).reversed());
+        for (Entry file : largestFirst) {
+            int smallest = 0;
+            for (int i = 1; i < count; i++) {
+                if (sizes[i] < sizes[smallest]) {
+                    smallest = i;
+                }
+            }
+            files.get(smallest).add(file);
+            sizes[smallest] += file.size();
+        }
+        for (int i = 0; i < this.symlinks.size(); i++) {
+            symlinks.get(i % count).add(this.symlinks.get(i));
+        }
+
+        List<CacheManifest> manifests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            files.get(i).sort(Comparator.comparing(Entry::relativePath));
+            manifests.add(new CacheManifest(files.get(i), symlinks.get(i)));
+        }
+        return manifests;
+    }
+
+    private static List<Entry> readEntries(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new Entry(in.readUTF(), in.readLong(), in.readInt(), in.readLong()));
+        }
+        return entries;
+    }
+
+    private static void writeEntries(DataOutputStream out, List<Entry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeUTF(entry.relativePath());
+            out.writeLong(entry.size());
+            out.writeInt(entry.mode());
+            out.writeLong(entry.lastModified());
+        }
+    }
+
+    /**
+     * A single entry of the manifest.
+     *
+     * @param relativePath The path relative to the cached directory
+     * @param size The size in bytes
+     * @param mode The POSIX permission bits, or -1 if not supported by the file system
+     * @param lastModified The modification time in milliseconds since the epoch
+     */
+    public record Entry(String relativePath, long size, int mode, long lastModified) {
+
+        static Entry of(String relativePath, BasicFileAttributes attributes) {
+            return new Entry(
+                    relativePath,
+                    attributes.size(),
+                    attributes instanceof PosixFileAttributes posixAttributes ? toMode(posixAttributes) : -1,
+                    attributes.lastModifiedTime().toMillis());
+        }
+
+        private static int toMode(PosixFileAttributes attributes) {
+            int mode = 0;
+            for (PosixFilePermission permission : attributes.permissions()) {
+                // the permissions are declared from owner read (0400) down to others execute (0001)
+                mode |= 0400 >> permission.ordinal();
+            }
+            return mode;
+        }
+    }
+
+    /**
+     * Lists a directory on the agent, writes its manifest to the target file and returns the raw size of the cache.
+     */
+    public record CreateCallable(FilePath source, String includes, String excludes, boolean useDefaultExcludes)
+            implements ControllerToAgentFileCallable<Long> {
+
+        @Override
+        public Long invoke(File targetFile, VirtualChannel channel) throws IOException, InterruptedException {
+            CacheManifest manifest = scan(new File(source.getRemote()), includes, excludes, useDefaultExcludes);
+            try (OutputStream outputStream = Files.newOutputStream(targetFile.toPath())) {
+                manifest.write(outputStream);
+            }
+
+            return manifest.getSize();
+        }
+    }
+
+    /**
+     * Splits the manifest file on the agent into the target files by {@link #split(int)}, after checking the raw size
+     * of the whole cache against the maximum size, if the raw size is limited.
+     */
+    record SplitCallable(List<FilePath> targets, long maxSize, CacheSizeAccounting accounting)
+            implements ControllerToAgentFileCallable<Void> {
+
+        @Override
+        public Void invoke(File manifestFile, VirtualChannel channel) throws IOException, InterruptedException {
+            CacheManifest manifest;
+            try (InputStream inputStream = Files.newInputStream(manifestFile.toPath())) {
+                manifest = read(inputStream);
+            }
+            new CacheSizeLimiter(maxSize, accounting).limit(manifest);
+
+            List<CacheManifest> manifests = manifest.split(targets.size());
+            for (int i = 0; i < targets.size(); i++) {
+                try (OutputStream outputStream = targets.get(i).write()) {
+                    manifests.get(i).write(outputStream);
+                }
+            }
+            return null;
+        }
+    }
+}
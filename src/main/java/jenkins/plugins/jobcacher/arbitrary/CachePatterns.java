@@ -0,0 +1,449 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import hudson.Util;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.apache.tools.ant.types.selectors.TokenizedPattern;
+
+/**
+ * Comma-separated includes/excludes patterns compiled once, so that they can be matched against all paths of a
+ * directory walk without tokenizing the patterns again for every path. Paths are matched with the same Ant glob
+ * semantics as {@link DirectoryScanner}: patterns without wildcards are looked up in a hash set, and directories
+ * whose contents cannot match any pattern are detected so that whole subtrees are skipped.
+ */
+public final class CachePatterns {
+
+    private static final Logger LOG = Logger.getLogger(CachePatterns.class.getName());
+
+    /**
+     * Number of threads used to list the directories of all walks.
+     */
+    static final int SCAN_PARALLELISM = SystemProperties.getInteger(
+            CachePatterns.class.getName() + ".scanParallelism",
+            Runtime.getRuntime().availableProcessors());
+
+    private static final boolean CASE_SENSITIVE = true;
+
+    /**
+     * The attributes read for every entry, the POSIX ones include the permissions without an additional system call.
+     */
+    private static final Class<? extends BasicFileAttributes> ATTRIBUTES =
+            FileSystems.getDefault().supportedFileAttributeViews().contains("posix")
+                    ? PosixFileAttributes.class
+                    : BasicFileAttributes.class;
+
+    private final Set<String> includeNames = new HashSet<>();
+    private final Set<String> literalIncludes = new HashSet<>();
+    private final Set<String> literalExcludes = new HashSet<>();
+    private final List<TokenizedPattern> includePatterns = new ArrayList<>();
+    private final List<TokenizedPattern> wildcardIncludePatterns = new ArrayList<>();
+    private final List<TokenizedPattern> wildcardExcludePatterns = new ArrayList<>();
+    private final List<TokenizedPattern> contentsExcludePatterns = new ArrayList<>();
+
+    /**
+     * The leading paths without wildcards of all include patterns, from which Ant starts scanning.
+     */
+    private final Set<String> roots = new HashSet<>();
+
+    private CachePatterns(String[] includes, String[] excludes, boolean normalized) {
+        for (String include : includes) {
+            TokenizedPattern pattern = new TokenizedPattern(include);
+            includePatterns.add(pattern);
+            if (normalized && !SelectorUtils.hasWildcards(include)) {
+                literalIncludes.add(include);
+            } else {
+                wildcardIncludePatterns.add(pattern);
+            }
+            if (normalized) {
+                includeNames.add(include);
+                roots.add(SelectorUtils.rtrimWildcardTokens(include));
+            }
+        }
+        for (String exclude : excludes) {
+            if (normalized && !SelectorUtils.hasWildcards(exclude)) {
+                literalExcludes.add(exclude);
+                continue;
+            }
+
+            TokenizedPattern pattern = new TokenizedPattern(exclude);
+            wildcardExcludePatterns.add(pattern);
+            if (pattern.endsWith(SelectorUtils.DEEP_TREE_MATCH)) {
+                contentsExcludePatterns.add(pattern.withoutLastToken());
+            }
+        }
+    }
+
+    /**
+     * Compiles the patterns exactly like the {@link DirectoryScanner} of the equivalent {@link FileSet} would, so
+     * that includes, excludes and default excludes are normalized and interpreted the same way.
+     *
+     * @param dir The directory the patterns are relative to
+     * @param includes The comma-separated include patterns
+     * @param excludes The comma-separated exclude patterns, may be null
+     * @param useDefaultExcludes Whether Ant's default excludes are applied
+     * @return The compiled patterns
+     */
+    public static CachePatterns compile(File dir, String includes, String excludes, boolean useDefaultExcludes) {
+        FileSet fs = Util.createFileSet(dir, includes, excludes);
+        fs.setDefaultexcludes(useDefaultExcludes);
+
+        NormalizingScanner scanner = new NormalizingScanner();
+        fs.setupDirectoryScanner(scanner, fs.getProject());
+        return new CachePatterns(scanner.getIncludes(), scanner.getExcludes(), true);
+    }
+
+    /**
+     * Compiles the patterns as they are written, without Ant's normalization (e.g. a trailing {@code /} does not
+     * imply {@code /**}).
+     */
+    static CachePatterns compileRaw(String includes, String excludes, boolean useDefaultExcludes) {
+        List<String> excludePatterns = new ArrayList<>(List.of(parsePatterns(excludes, null)));
+        if (useDefaultExcludes) {
+            Collections.addAll(excludePatterns, DirectoryScanner.getDefaultExcludes());
+        }
+        return new CachePatterns(
+                parsePatterns(includes, SelectorUtils.DEEP_TREE_MATCH), excludePatterns.toArray(new String[0]), false);
+    }
+
+    /**
+     * Checks whether a relative path matches at least one include pattern and none of the exclude patterns.
+     */
+    boolean matches(TokenizedPath path) {
+        return matches(path, literalIncludes, wildcardIncludePatterns)
+                && !matches(path, literalExcludes, wildcardExcludePatterns);
+    }
+
+    /**
+     * Checks whether a relative path of a real file matches the patterns and would be found by
+     * {@link DirectoryScanner}. As Ant only scans below the leading paths of the include patterns, a file located
+     * exactly at such a path is only found if it is included literally.
+     */
+    boolean matchesFile(TokenizedPath path) {
+        if (!matches(path)) {
+            return false;
+        }
+
+        String relativePath = path.toString();
+        if (!roots.contains(relativePath) || includeNames.contains(relativePath)) {
+            return true;
+        }
+        for (String root : roots) {
+            if (root.isEmpty() || relativePath.startsWith(root + File.separator)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a relative directory can contain matching entries, using the same rules by which
+     * {@link DirectoryScanner} decides to descend into a directory.
+     */
+    boolean couldHoldMatches(TokenizedPath directory) {
+        for (TokenizedPattern pattern : contentsExcludePatterns) {
+            if (pattern.matchPath(directory, CASE_SENSITIVE)) {
+                return false;
+            }
+        }
+
+        for (TokenizedPattern pattern : includePatterns) {
+            if (pattern.matchStartOf(directory, CASE_SENSITIVE)
+                    && (pattern.containsPattern(SelectorUtils.DEEP_TREE_MATCH)
+                            || pattern.depth() > directory.depth())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks a directory and passes all regular files matching the patterns to the visitor, in sorted order of their
+     * relative paths. Directories whose contents cannot match the patterns are not walked at all.
+     *
+     * @param dir The directory to walk, nothing is visited if it is not a directory
+     * @param followSymlinks Whether symlinks are followed, otherwise they are not visited
+     * @param visitor The visitor for matching files
+     */
+    public void walk(File dir, boolean followSymlinks, Visitor visitor) throws IOException {
+        walk(dir, followSymlinks, visitor, null, null);
+    }
+
+    /**
+     * Lists the relative paths of all regular files matching the patterns in sorted order, like
+     * {@link DirectoryScanner#getIncludedFiles()} does.
+     *
+     * @param dir The directory to walk, nothing is listed if it is not a directory
+     * @param followSymlinks Whether symlinks are followed, otherwise they are not listed
+     * @return The sorted relative paths
+     */
+    public List<String> list(File dir, boolean followSymlinks) throws IOException {
+        List<String> files = new ArrayList<>();
+        walk(dir, followSymlinks, (relativePath, attributes) -> files.add(relativePath));
+        return files;
+    }
+
+    /**
+     * Walks a directory like {@link #walk(File, boolean, Visitor)} and, if symlinks are not followed, additionally
+     * passes the symlinks matching the given symlink patterns to the symlink visitor, also in sorted order.
+     *
+     * <p>Directories are listed in parallel by a pool of {@link #SCAN_PARALLELISM} threads shared by all walks, as
+     * walking large trees is bound by the latency of the file system rather than its throughput. Entries which cannot
+     * be read or have been deleted meanwhile are logged and skipped. The visitors are only called once the
+     * walk is complete, from the calling thread and in a deterministic order, so that archives stay reproducible.
+     */
+    void walk(File dir, boolean followSymlinks, Visitor visitor, CachePatterns symlinkPatterns, Visitor symlinkVisitor)
+            throws IOException {
+        if (!dir.isDirectory()) {
+            return;
+        }
+
+        // Ant does not report any real file if the base directory itself is a symlink which is not followed
+        Path root = dir.toPath();
+        boolean rootIsSkippedSymlink = !followSymlinks && Files.isSymbolicLink(root);
+        Path start = rootIsSkippedSymlink ? root.toRealPath() : root;
+
+        Walk walk = new Walk(this, followSymlinks, !rootIsSkippedSymlink, symlinkPatterns);
+        ScanPool.POOL.invoke(new DirectoryTask(walk, start, TokenizedPath.EMPTY_PATH, List.of(fileKey(start))));
+
+        for (Entry file : sort(walk.files)) {
+            visitor.visit(file.relativePath(), file.attributes());
+        }
+        for (Entry symlink : sort(walk.symlinks)) {
+            symlinkVisitor.visit(symlink.relativePath(), symlink.attributes());
+        }
+    }
+
+    private static List<Entry> sort(Queue<Entry> entries) {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing(Entry::relativePath));
+        return sorted;
+    }
+
+    private static Object fileKey(Path path) throws IOException {
+        Object fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        return fileKey != null ? fileKey : path.toRealPath();
+    }
+
+    private record Entry(String relativePath, BasicFileAttributes attributes) {}
+
+    /**
+     * Holds the pool shared by all walks, so that it is only created once it is used.
+     */
+    private static final class ScanPool {
+
+        static final ForkJoinPool POOL = new ForkJoinPool(Math.max(1, SCAN_PARALLELISM));
+    }
+
+    /**
+     * The state of a single walk, shared by the tasks listing its directories.
+     */
+    private static final class Walk {
+
+        private final CachePatterns patterns;
+        private final boolean followSymlinks;
+        private final boolean reportFiles;
+        private final CachePatterns symlinkPatterns;
+        private final Queue<Entry> files = new ConcurrentLinkedQueue<>();
+        private final Queue<Entry> symlinks = new ConcurrentLinkedQueue<>();
+
+        Walk(CachePatterns patterns, boolean followSymlinks, boolean reportFiles, CachePatterns symlinkPatterns) {
+            this.patterns = patterns;
+            this.followSymlinks = followSymlinks;
+            this.reportFiles = reportFiles;
+            this.symlinkPatterns = symlinkPatterns;
+        }
+
+        private boolean couldHoldAnyMatches(TokenizedPath path) {
+            return patterns.couldHoldMatches(path)
+                    || (symlinkPatterns != null && symlinkPatterns.couldHoldMatches(path));
+        }
+
+        private BasicFileAttributes readAttributes(Path path) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+            if (followSymlinks && attributes.isSymbolicLink()) {
+                try {
+                    return Files.readAttributes(path, ATTRIBUTES);
+                } catch (IOException e) {
+                    // dangling symlink, keep the attributes of the link itself
+                }
+            }
+            return attributes;
+        }
+    }
+
+    /**
+     * Lists a single directory and forks a task for each of its subdirectories that could hold matches.
+     */
+    private static final class DirectoryTask extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient Walk walk;
+        private final transient Path directory;
+        private final transient TokenizedPath relativePath;
+        private final transient List<Object> ancestors;
+
+        DirectoryTask(Walk walk, Path directory, TokenizedPath relativePath, List<Object> ancestors) {
+            this.walk = walk;
+            this.directory = directory;
+            this.relativePath = relativePath;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    try {
+                        visit(entry, subtasks);
+                    } catch (IOException e) {
+                        skip(entry, e);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                // like a file visitor continuing after visitFileFailed, the rest of the walk is not aborted
+                skip(directory, e instanceof DirectoryIteratorException ? e.getCause() : e);
+            }
+            invokeAll(subtasks);
+        }
+
+        private void visit(Path entry, List<DirectoryTask> subtasks) throws IOException {
+            TokenizedPath path =
+                    new TokenizedPath(relativePath, entry.getFileName().toString());
+            BasicFileAttributes attributes = walk.readAttributes(entry);
+            if (attributes.isDirectory()) {
+                DirectoryTask subtask = createSubtask(entry, path, attributes);
+                if (subtask != null) {
+                    subtasks.add(subtask);
+                }
+            } else if (attributes.isSymbolicLink()) {
+                if (walk.symlinkPatterns != null && walk.symlinkPatterns.matches(path)) {
+                    walk.symlinks.add(new Entry(path.toString(), attributes));
+                }
+            } else if (attributes.isRegularFile() && walk.reportFiles && walk.patterns.matchesFile(path)) {
+                walk.files.add(new Entry(path.toString(), attributes));
+            }
+        }
+
+        /**
+         * Skips an entry which cannot be read, like Ant's directory scanner does. Entries deleted while the directory
+         * is walked are expected, e.g. temporary files of a build tool, so they are not worth a warning.
+         */
+        private static void skip(Path entry, Throwable e) {
+            if (e instanceof NoSuchFileException) {
+                LOG.log(Level.FINE, () -> "Skipping " + entry + " which has been deleted while scanning");
+            } else {
+                LOG.log(Level.WARNING, e, () -> "Skipping " + entry + " which cannot be read");
+            }
+        }
+
+        private DirectoryTask createSubtask(Path entry, TokenizedPath path, BasicFileAttributes attributes)
+                throws IOException {
+            if (!walk.couldHoldAnyMatches(path)) {
+                return null;
+            }
+
+            if (!walk.followSymlinks) {
+                return new DirectoryTask(walk, entry, path, ancestors);
+            }
+            // a followed symlink pointing to one of its ancestors would be walked endlessly
+            Object fileKey = attributes.fileKey() != null ? attributes.fileKey() : entry.toRealPath();
+            if (ancestors.contains(fileKey)) {
+                return null;
+            }
+            List<Object> subtaskAncestors = new ArrayList<>(ancestors);
+            subtaskAncestors.add(fileKey);
+            return new DirectoryTask(walk, entry, path, subtaskAncestors);
+        }
+    }
+
+    private static boolean matches(TokenizedPath path, Set<String> literals, List<TokenizedPattern> patterns) {
+        if (!literals.isEmpty() && literals.contains(path.toString())) {
+            return true;
+        }
+        for (TokenizedPattern pattern : patterns) {
+            if (pattern.matchPath(path, CASE_SENSITIVE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a comma-separated pattern string into individual patterns, consistent with how
+     * {@link hudson.Util#createFileSet(java.io.File, String, String)} tokenizes includes/excludes.
+     * Whitespace around commas is trimmed but not treated as a separator itself.
+     *
+     * @param patterns the raw pattern string (may be null or empty)
+     * @param defaultPattern fallback pattern to use when input is null or empty, or null for empty array
+     * @return array of individual patterns
+     */
+    private static String[] parsePatterns(String patterns, String defaultPattern) {
+        if (patterns == null || patterns.isBlank()) {
+            return defaultPattern != null ? new String[] {defaultPattern} : new String[0];
+        }
+        String[] tokens = patterns.split(",");
+        List<String> result = new ArrayList<>();
+        for (String token : tokens) {
+            String trimmed = token.trim();
+            if (!trimmed.isEmpty()) {
+                result.add(trimmed);
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * Receives the matching entries of a directory walk. The attributes are {@link PosixFileAttributes} if the file
+     * system supports them.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+
+        void visit(String relativePath, BasicFileAttributes attributes) throws IOException;
+    }
+
+    /**
+     * Collects the normalized patterns of a {@link FileSet} without letting the {@link DirectoryScanner} scan the
+     * directory, applying the same defaults as {@link DirectoryScanner#scan()}.
+     */
+    private static final class NormalizingScanner extends DirectoryScanner {
+
+        String[] getIncludes() {
+            return includes == null ? new String[] {SelectorUtils.DEEP_TREE_MATCH} : includes;
+        }
+
+        String[] getExcludes() {
+            return excludes == null ? new String[0] : excludes;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import hudson.FilePath;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import jenkins.plugins.itemstorage.ConcurrentTasks;
+import jenkins.plugins.itemstorage.ObjectPath;
+import jenkins.plugins.itemstorage.RangedObjectPath;
+import jenkins.plugins.jobcacher.CacheSizeAccounting;
+import jenkins.plugins.jobcacher.CacheSizeExceededException;
+import jenkins.plugins.jobcacher.CacheStats;
+import jenkins.plugins.jobcacher.arbitrary.WorkspaceHelper.TempFile;
+
+/**
+ * A cache split into shards of about the same raw size, which are archived, transferred and extracted concurrently
+ * by the strategy of the cache on the {@link ConcurrentTasks}. The shards are stored next to each other and tied
+ * together by a shards file holding their number and generation. Each save writes its shards under a new generation
+ * and only replaces the shards file once all of them are stored, so that a failed or aborted save keeps the previous
+ * cache, whose shards are deleted afterwards.
+ */
+public final class CacheShards {
+
+    /**
+     * The extension appended to the name of the archive to get the name of the shards file.
+     */
+    public static final String EXTENSION = ".shards";
+
+    private final ArbitraryFileCacheStrategy strategy;
+    private final ObjectPath cachesRoot;
+    private final String baseName;
+
+    /**
+     * @param strategy The strategy archiving each shard
+     * @param cachesRoot The path the caches of the job are stored at
+     * @param baseName The base name of the cache
+     */
+    public CacheShards(ArbitraryFileCacheStrategy strategy, ObjectPath cachesRoot, String baseName) {
+        this.strategy = strategy;
+        this.cachesRoot = cachesRoot;
+        this.baseName = baseName;
+    }
+
+    /**
+     * Gets the path of the shards file.
+     */
+    public ObjectPath getPath() throws IOException, InterruptedException {
+        return cachesRoot.child(strategy.createCacheName(baseName) + EXTENSION);
+    }
+
+    /**
+     * Checks whether a complete set of shards exists.
+     */
+    public boolean exists() throws IOException, InterruptedException {
+        return getPath().exists();
+    }
+
+    /**
+     * Splits the entries of the manifest into shards and saves them, replacing the existing shards once all new ones
+     * are stored. The raw size is checked against the maximum size before splitting, while the compressed size of
+     * each shard is limited to its share of the maximum size.
+     *
+     * @param count The number of shards
+     * @return The size of all shards in bytes measured with the given accounting, or 0 if the size is not limited
+     */
+    public long save(
+            FilePath source,
+            FilePath manifest,
+            int count,
+            FilePath workspace,
+            long maxSize,
+            CacheSizeAccounting accounting,
+            CacheStats stats)
+            throws IOException, InterruptedException {
+        Layout previous = exists() ? readLayout() : null;
+        Layout layout = new Layout(count, createGeneration(previous));
+
+        List<TempFile> manifests = new ArrayList<>();
+        long size = 0;
+        try {
+            for (int shard = 0; shard < count; shard++) {
+                manifests.add(WorkspaceHelper.createTempFile(workspace, ".manifest"));
+            }
+            manifest.act(new CacheManifest.SplitCallable(
+                    manifests.stream().map(TempFile::get).toList(), maxSize, accounting));
+
+            long shardMaxSize = getShardMaxSize(maxSize, count, accounting);
+            List<CacheStats> shardStats = createStats(count, stats);
+            long[] sizes = new long[count];
+            ConcurrentTasks.forEach(
+                    count,
+                    shard -> sizes[shard] = strategy.cache(
+                            source,
+                            manifests.get(shard).get(),
+                            getShard(layout, shard),
+                            getShardIndex(layout, shard),
+                            workspace,
+                            shardMaxSize,
+                            accounting,
+                            shardStats.get(shard)));
+            stats.addShards(shardStats);
+
+            for (long shardSize : sizes) {
+                size += shardSize;
+            }
+            if (size > maxSize) {
+                throw new CacheSizeExceededException(maxSize);
+            }
+
+            writeLayout(layout, workspace);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            discard(layout, e);
+            throw e;
+        } finally {
+            for (TempFile tempFile : manifests) {
+                tempFile.close();
+            }
+        }
+
+        if (previous != null) {
+            deleteShards(previous);
+        }
+        return size;
+    }
+
+    /**
+     * Restores all shards into the target.
+     */
+    public void restore(FilePath target, FilePath workspace, CacheStats stats)
+            throws IOException, InterruptedException {
+        Layout layout = readLayout();
+        target.mkdirs();
+
+        List<CacheStats> shardStats = createStats(layout.count(), stats);
+        ConcurrentTasks.forEach(
+                layout.count(),
+                shard -> strategy.restore(getShard(layout, shard), target, workspace, shardStats.get(shard)));
+        stats.addShards(shardStats);
+    }
+
+    /**
+     * Gets the stored size of all shards.
+     *
+     * @return The size in bytes, or 0 if the storage cannot tell the size of stored objects
+     */
+    public long length() throws IOException, InterruptedException {
+        if (!exists()) {
+            return 0;
+        }
+
+        Layout layout = readLayout();
+        long length = 0;
+        for (int shard = 0; shard < layout.count(); shard++) {
+            if (!(getShard(layout, shard) instanceof RangedObjectPath rangedShard)) {
+                return 0;
+            }
+            length += rangedShard.length();
+        }
+        return length;
+    }
+
+    /**
+     * Deletes the shards file and all shards, if any.
+     */
+    public void delete() throws IOException, InterruptedException {
+        ObjectPath path = getPath();
+        if (path.exists()) {
+            Layout layout = readLayout();
+            path.deleteRecursive();
+            deleteShards(layout);
+        } else {
+            deleteShards(Layout.LEGACY);
+        }
+    }
+
+    /**
+     * Gets the maximum size of each shard. A raw size has already been checked for all shards before splitting,
+     * while a compressed size is only known once a shard is archived, so each shard gets an equal share.
+     */
+    private static long getShardMaxSize(long maxSize, int count, CacheSizeAccounting accounting) {
+        if (maxSize == Long.MAX_VALUE || accounting != CacheSizeAccounting.COMPRESSED) {
+            return maxSize;
+        }
+        return maxSize / count;
+    }
+
+    private static String createGeneration(Layout previous) {
+        String generation;
+        do {
+            generation = String.format("%08x", ThreadLocalRandom.current().nextInt());
+        } while (previous != null && generation.equals(previous.generation()));
+        return generation;
+    }
+
+    /**
+     * Deletes the shards of a save that has failed, keeping the failure as the exception to report.
+     */
+    private void discard(Layout layout, Exception failure) {
+        try {
+            deleteShards(layout);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        } catch (InterruptedException e) {
+            failure.addSuppressed(e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deleteShards(Layout layout) throws IOException, InterruptedException {
+        for (int shard = 0; shard < layout.count(); shard++) {
+            ObjectPath path = getShard(layout, shard);
+            if (!path.exists()) {
+                if (layout.generation() == null) {
+                    // the number of shards saved without a generation is unknown, so stop at the first missing one
+                    return;
+                }
+                continue;
+            }
+            path.deleteRecursive();
+            ObjectPath index = getShardIndex(layout, shard);
+            if (index.exists()) {
+                index.deleteRecursive();
+            }
+        }
+    }
+
+    private ObjectPath getShard(Layout layout, int shard) throws IOException, InterruptedException {
+        return cachesRoot.child(strategy.createCacheName(getShardBaseName(layout, shard)));
+    }
+
+    private ObjectPath getShardIndex(Layout layout, int shard) throws IOException, InterruptedException {
+        return cachesRoot.child(strategy.createCacheName(getShardBaseName(layout, shard)) + CacheIndex.EXTENSION);
+    }
+
+    private String getShardBaseName(Layout layout, int shard) {
+        if (layout.generation() == null) {
+            return baseName + "-shard" + shard;
+        }
+        return baseName + "-" + layout.generation() + "-shard" + shard;
+    }
+
+    private void writeLayout(Layout layout, FilePath workspace) throws IOException, InterruptedException {
+        try (TempFile tempFile = WorkspaceHelper.createTempFile(workspace, EXTENSION)) {
+            tempFile.get().write(layout.count() + "\n" + layout.generation() + "\n", StandardCharsets.UTF_8.name());
+            getPath().copyFrom(tempFile.get());
+        }
+    }
+
+    /**
+     * Reads the shards file. It is small, so it is read on the controller.
+     */
+    private Layout readLayout() throws IOException, InterruptedException {
+        File tempFile = Files.createTempFile("cache", EXTENSION).toFile();
+        try {
+            getPath().copyTo(new FilePath(tempFile));
+            List<String> lines = Files.readAllLines(tempFile.toPath(), StandardCharsets.UTF_8);
+            if (lines.isEmpty()) {
+                throw new IOException("Invalid shards file " + getPath());
+            }
+            // shards files written before generations only hold the number of shards
+            return new Layout(
+                    Integer.parseInt(lines.get(0).trim()),
+                    lines.size() > 1 ? lines.get(1).trim() : null);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid shards file " + getPath(), e);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    private static List<CacheStats> createStats(int count, CacheStats stats) {
+        List<CacheStats> shardStats = new ArrayList<>();
+        for (int shard = 0; shard < count; shard++) {
+            shardStats.add(new CacheStats(stats.getCache()));
+        }
+        return shardStats;
+    }
+
+    /**
+     * The contents of the shards file.
+     *
+     * @param count The number of shards
+     * @param generation The generation the shards are stored under, or null for shards saved before generations
+     */
+    private record Layout(int count, String generation) {
+
+        /**
+         * The shards saved before generations, whose number is unknown without a shards file.
+         */
+        static final Layout LEGACY = new Layout(Integer.MAX_VALUE, null);
+    }
+}
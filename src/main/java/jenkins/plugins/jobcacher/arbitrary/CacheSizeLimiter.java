@@ -0,0 +1,85 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import jenkins.plugins.jobcacher.CacheSizeAccounting;
+import jenkins.plugins.jobcacher.CacheSizeExceededException;
+
+/**
+ * Counts the size of a cache while it is archived and aborts archiving with a {@link CacheSizeExceededException} as
+ * soon as the maximum size is exceeded. Depending on the {@link CacheSizeAccounting}, either the files listed in the
+ * {@link CacheManifest} or the bytes written to the archive are counted.
+ */
+final class CacheSizeLimiter {
+
+    private final long maxSize;
+    private final CacheSizeAccounting accounting;
+    private long size;
+
+    CacheSizeLimiter(long maxSize, CacheSizeAccounting accounting) {
+        this.maxSize = maxSize;
+        this.accounting = accounting == null ? CacheSizeAccounting.RAW : accounting;
+    }
+
+    /**
+     * Counts the size of the files listed in the manifest before anything is archived, if the raw size is limited.
+     */
+    void limit(CacheManifest manifest) throws CacheSizeExceededException {
+        if (!isLimited() || accounting != CacheSizeAccounting.RAW) {
+            return;
+        }
+
+        add(manifest.getSize());
+    }
+
+    /**
+     * Wraps the stream of the archive file to count the written bytes, if the compressed size is limited.
+     */
+    OutputStream limit(OutputStream outputStream) {
+        if (!isLimited() || accounting != CacheSizeAccounting.COMPRESSED) {
+            return outputStream;
+        }
+
+        return new LimitingOutputStream(outputStream);
+    }
+
+    /**
+     * Gets the size counted so far.
+     *
+     * @return The size in bytes, or 0 if the size is not limited
+     */
+    long getSize() {
+        return size;
+    }
+
+    private boolean isLimited() {
+        return maxSize != Long.MAX_VALUE;
+    }
+
+    private void add(long bytes) throws CacheSizeExceededException {
+        size += bytes;
+        if (size > maxSize) {
+            throw new CacheSizeExceededException(maxSize);
+        }
+    }
+
+    private class LimitingOutputStream extends FilterOutputStream {
+
+        LimitingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            add(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            add(len);
+            out.write(b, off, len);
+        }
+    }
+}
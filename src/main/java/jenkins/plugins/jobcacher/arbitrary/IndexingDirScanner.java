@@ -0,0 +1,67 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * A directory scanner that records a {@link CacheIndex} of the entries passed to the archiver. The archiver writes
+ * TAR records of 512 bytes to the counted stream as soon as they are complete, so the count before each entry is the
+ * offset of its headers in the uncompressed TAR stream.
+ */
+class IndexingDirScanner extends DirScanner {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final DirScanner scanner;
+    private final transient CountingOutputStream counter;
+    private final transient List<CacheIndex.Entry> entries = new ArrayList<>();
+
+    /**
+     * @param scanner The scanner passing the entries to the archiver
+     * @param counter The stream the archiver writes the uncompressed TAR stream to
+     */
+    IndexingDirScanner(DirScanner scanner, CountingOutputStream counter) {
+        this.scanner = scanner;
+        this.counter = counter;
+    }
+
+    @Override
+    public void scan(File dir, FileVisitor visitor) throws IOException {
+        scanner.scan(dir, new FileVisitor() {
+            @Override
+            public void visit(File file, String relativePath) throws IOException {
+                entries.add(new CacheIndex.Entry(normalize(relativePath), file.length(), counter.getByteCount(), null));
+                visitor.visit(file, relativePath);
+            }
+
+            @Override
+            public void visitSymlink(File link, String target, String relativePath) throws IOException {
+                entries.add(new CacheIndex.Entry(normalize(relativePath), 0, counter.getByteCount(), target));
+                visitor.visitSymlink(link, target, relativePath);
+            }
+
+            @Override
+            public boolean understandsSymlink() {
+                return visitor.understandsSymlink();
+            }
+        });
+    }
+
+    /**
+     * Gets the index of all entries scanned so far.
+     */
+    CacheIndex getIndex() {
+        return new CacheIndex(entries);
+    }
+
+    private static String normalize(String relativePath) {
+        return relativePath.replace('\\', '/');
+    }
+}
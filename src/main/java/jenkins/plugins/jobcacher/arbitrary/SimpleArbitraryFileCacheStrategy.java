@@ -3,6 +3,8 @@ package jenkins.plugins.jobcacher.arbitrary;
 import hudson.FilePath;
 import java.io.IOException;
 import jenkins.plugins.itemstorage.ObjectPath;
+import jenkins.plugins.jobcacher.CacheSizeAccounting;
+import jenkins.plugins.jobcacher.CacheStats;
 
 public class SimpleArbitraryFileCacheStrategy implements ArbitraryFileCacheStrategy {
 
@@ -12,19 +14,21 @@ public class SimpleArbitraryFileCacheStrategy implements ArbitraryFileCacheStrat
     }
 
     @Override
-    public void cache(
+    public long cache(
             FilePath source,
-            String includes,
-            String excludes,
-            boolean useDefaultExcludes,
+            FilePath manifest,
             ObjectPath target,
-            FilePath workspace)
+            ObjectPath index,
+            FilePath workspace,
+            long maxSize,
+            CacheSizeAccounting accounting,
+            CacheStats stats)
             throws IOException, InterruptedException {
         throw new UnsupportedOperationException("This compression method is not supported anymore");
     }
 
     @Override
-    public void restore(ObjectPath source, FilePath target, FilePath workspace)
+    public void restore(ObjectPath source, FilePath target, FilePath workspace, CacheStats stats)
             throws IOException, InterruptedException {
         throw new UnsupportedOperationException("This compression method is not supported anymore");
     }
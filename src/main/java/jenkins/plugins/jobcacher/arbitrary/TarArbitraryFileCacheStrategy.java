@@ -2,11 +2,24 @@ package jenkins.plugins.jobcacher.arbitrary;
 
 import hudson.FilePath;
 import hudson.remoting.VirtualChannel;
+import hudson.util.DirScanner;
 import hudson.util.io.ArchiverFactory;
 import java.io.*;
 import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import jenkins.agents.ControllerToAgentFileCallable;
+import jenkins.plugins.itemstorage.ObjectPath;
+import jenkins.plugins.itemstorage.RangedObjectPath;
+import jenkins.plugins.jobcacher.CacheEvents;
+import jenkins.plugins.jobcacher.CacheSizeAccounting;
+import jenkins.plugins.jobcacher.CacheStats;
 import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.kohsuke.stapler.HttpResponse;
 
 public class TarArbitraryFileCacheStrategy extends AbstractCompressingArbitraryFileCacheStrategy {
 
@@ -29,30 +42,130 @@ public class TarArbitraryFileCacheStrategy extends AbstractCompressingArbitraryF
         return archiveExtension;
     }
 
+    @Override
+    public boolean isIndexed() {
+        return true;
+    }
+
+    @Override
+    public HttpResponse browse(ObjectPath source, ObjectPath index, String title)
+            throws IOException, InterruptedException {
+        if (!(source instanceof RangedObjectPath rangedSource)
+                || !(index instanceof RangedObjectPath rangedIndex)
+                || !index.exists()) {
+            return null;
+        }
+
+        return new ArchiveBrowser(readIndex(rangedIndex), offset -> openTarStream(rangedSource, offset, null), title);
+    }
+
+    @Override
+    public boolean restore(
+            ObjectPath source, ObjectPath index, String includes, FilePath target, FilePath workspace, CacheStats stats)
+            throws IOException, InterruptedException {
+        if (!(source instanceof RangedObjectPath rangedSource)
+                || !(index instanceof RangedObjectPath rangedIndex)
+                || !index.exists()) {
+            return false;
+        }
+
+        long startTime = System.nanoTime();
+        CachePatterns patterns = CachePatterns.compile(new File(target.getRemote()), includes, null, false);
+        List<CacheIndex.Range> ranges = readIndex(rangedIndex)
+                .select(entry ->
+                        patterns.matches(new TokenizedPath(entry.relativePath().replace('/', File.separatorChar))));
+
+        target.mkdirs();
+        AtomicLong transferred = new AtomicLong();
+        try (InputStream inputStream = new TarRangesInputStream(
+                offset -> openTarStream(rangedSource, offset, transferred), isPlainTar(), ranges)) {
+            target.untarFrom(inputStream, FilePath.TarCompression.NONE);
+        }
+
+        // the entries are transferred and extracted in a single stream
+        stats.addTransferTime(System.nanoTime() - startTime);
+        stats.setCompressedBytes(transferred.get());
+        return true;
+    }
+
+    private static CacheIndex readIndex(RangedObjectPath index) throws IOException, InterruptedException {
+        try (InputStream inputStream = index.readRange(0, index.length())) {
+            return CacheIndex.read(inputStream);
+        }
+    }
+
+    private boolean isPlainTar() {
+        return ".tar".equals(archiveExtension);
+    }
+
+    /**
+     * Opens the uncompressed TAR stream of an archive at the given offset. Plain TAR archives are read from the
+     * offset, compressed archives have to be decompressed from the start.
+     *
+     * @param transferred Counts the bytes read from the storage, may be null
+     */
+    private InputStream openTarStream(RangedObjectPath source, long offset, AtomicLong transferred)
+            throws IOException, InterruptedException {
+        long start = isPlainTar() ? offset : 0;
+        InputStream rangeInputStream = source.readRange(start, source.length() - start);
+        if (transferred != null) {
+            rangeInputStream = new ProxyInputStream(rangeInputStream) {
+                @Override
+                protected void afterRead(int n) {
+                    if (n > 0) {
+                        transferred.addAndGet(n);
+                    }
+                }
+            };
+        }
+        if (isPlainTar()) {
+            return new BufferedInputStream(rangeInputStream);
+        }
+
+        InputStream inputStream =
+                compressingInputStreamFactory.createCompressingInputStream(new BufferedInputStream(rangeInputStream));
+        try {
+            IOUtils.skipFully(inputStream, offset);
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+        return new BufferedInputStream(inputStream);
+    }
+
     @Override
     protected void uncompress(FilePath source, FilePath target) throws IOException, InterruptedException {
-        source.act(new ExtractTarCallable(target, compressingInputStreamFactory));
+        source.act(new ExtractTarCallable(target, compressingInputStreamFactory, archiveExtension));
     }
 
     @Override
-    protected void compress(
-            FilePath source, String includes, String excludes, boolean useDefaultExcludes, FilePath target)
+    protected long compress(
+            FilePath source,
+            FilePath manifest,
+            FilePath target,
+            FilePath index,
+            long maxSize,
+            CacheSizeAccounting accounting)
             throws IOException, InterruptedException {
-        target.act(
-                new CreateTarCallable(source, includes, excludes, useDefaultExcludes, compressingOutputStreamFactory));
+        return target.act(new CreateTarCallable(
+                source, manifest, index, maxSize, accounting, compressingOutputStreamFactory, archiveExtension));
     }
 
-    private record ExtractTarCallable(FilePath target, CompressingInputStreamFactory compressingInputStreamFactory)
+    private record ExtractTarCallable(
+            FilePath target, CompressingInputStreamFactory compressingInputStreamFactory, String archiveExtension)
             implements ControllerToAgentFileCallable<Void> {
 
         @Override
         public Void invoke(File sourceFile, VirtualChannel channel) throws IOException, InterruptedException {
+            CacheEvents.Archive event = new CacheEvents.Archive();
+            event.begin();
             try (InputStream inputStream = createInputStream(sourceFile)) {
                 target.untarFrom(inputStream, FilePath.TarCompression.NONE);
             } catch (CompressorException e) {
                 throw new IOException(e);
             }
 
+            commitArchiveEvent(event, "extract", archiveExtension, target, sourceFile);
             return null;
         }
 
@@ -67,28 +180,51 @@ public class TarArbitraryFileCacheStrategy extends AbstractCompressingArbitraryF
 
     private record CreateTarCallable(
             FilePath source,
-            String includes,
-            String excludes,
-            boolean useDefaultExcludes,
-            CompressingOutputStreamFactory compressingOutputStreamFactory)
-            implements ControllerToAgentFileCallable<Void> {
+            FilePath manifest,
+            FilePath index,
+            long maxSize,
+            CacheSizeAccounting accounting,
+            CompressingOutputStreamFactory compressingOutputStreamFactory,
+            String archiveExtension)
+            implements ControllerToAgentFileCallable<Long> {
 
         @Override
-        public Void invoke(File targetFile, VirtualChannel channel) throws IOException, InterruptedException {
-            try (OutputStream outputStream = createOutputStream(targetFile)) {
-                source.archive(
-                        ArchiverFactory.TAR,
-                        outputStream,
-                        new SymlinkSafeDirScanner(includes, excludes, useDefaultExcludes));
+        public Long invoke(File targetFile, VirtualChannel channel) throws IOException, InterruptedException {
+            CacheEvents.Archive event = new CacheEvents.Archive();
+            event.begin();
+            CacheManifest cacheManifest = CacheManifest.read(manifest);
+
+            CacheSizeLimiter limiter = new CacheSizeLimiter(maxSize, accounting);
+            limiter.limit(cacheManifest);
+            DirScanner scanner = new SymlinkSafeDirScanner(cacheManifest);
+            IndexingDirScanner indexingScanner = null;
+            try (OutputStream outputStream = createOutputStream(targetFile, limiter)) {
+                if (index == null) {
+                    source.archive(ArchiverFactory.TAR, outputStream, scanner);
+                } else {
+                    // count the uncompressed TAR stream to record the offset of each entry
+                    CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+                    indexingScanner = new IndexingDirScanner(scanner, countingOutputStream);
+                    source.archive(ArchiverFactory.TAR, countingOutputStream, indexingScanner);
+                }
             } catch (CompressorException e) {
                 throw new IOException(e);
             }
 
-            return null;
+            if (indexingScanner != null) {
+                try (OutputStream outputStream = index.write()) {
+                    indexingScanner.getIndex().write(outputStream);
+                }
+            }
+
+            commitArchiveEvent(event, "create", archiveExtension, source, targetFile);
+            return limiter.getSize();
         }
 
-        private OutputStream createOutputStream(File targetFile) throws IOException, CompressorException {
+        private OutputStream createOutputStream(File targetFile, CacheSizeLimiter limiter)
+                throws IOException, CompressorException {
             OutputStream outputStream = Files.newOutputStream(targetFile.toPath());
+            outputStream = limiter.limit(outputStream);
             outputStream = new BufferedOutputStream(outputStream);
             outputStream = compressingOutputStreamFactory.createCompressingOutputStream(outputStream);
 
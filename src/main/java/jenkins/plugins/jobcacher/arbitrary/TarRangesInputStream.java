@@ -0,0 +1,107 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Concatenates ranges of the uncompressed TAR stream of an archive, which yields a TAR stream of just the entries
+ * within the ranges. The stream ends after the last range, so the rest of the archive is never read.
+ */
+class TarRangesInputStream extends InputStream {
+
+    /**
+     * The smallest gap between two ranges for which the TAR stream is opened again at the next range rather than
+     * skipping the gap, if the archive can be read at any offset.
+     */
+    static final long REOPEN_THRESHOLD = 1024 * 1024;
+
+    private final ArchiveBrowser.TarStreamFactory tarStreamFactory;
+    private final boolean seekable;
+    private final Iterator<CacheIndex.Range> ranges;
+
+    private InputStream inputStream;
+    private long position;
+    private long remaining;
+
+    /**
+     * @param tarStreamFactory Opens the uncompressed TAR stream of the archive at an offset
+     * @param seekable Whether opening the stream at an offset is cheap, otherwise it is only opened once
+     * @param ranges The ranges in the order of their offsets
+     */
+    TarRangesInputStream(
+            ArchiveBrowser.TarStreamFactory tarStreamFactory, boolean seekable, List<CacheIndex.Range> ranges) {
+        this.tarStreamFactory = tarStreamFactory;
+        this.seekable = seekable;
+        this.ranges = ranges.iterator();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        while (remaining == 0) {
+            if (!nextRange()) {
+                return -1;
+            }
+        }
+
+        int n = inputStream.read(b, off, remaining < 0 ? len : (int) Math.min(len, remaining));
+        if (n < 0) {
+            if (remaining > 0) {
+                throw new IOException("Unexpected end of archive at offset " + position);
+            }
+            remaining = 0;
+            return nextRange() ? read(b, off, len) : -1;
+        }
+
+        position += n;
+        if (remaining > 0) {
+            remaining -= n;
+        }
+        return n;
+    }
+
+    private boolean nextRange() throws IOException {
+        if (!ranges.hasNext()) {
+            return false;
+        }
+
+        CacheIndex.Range range = ranges.next();
+        if (inputStream == null || (seekable && range.offset() - position >= REOPEN_THRESHOLD)) {
+            close();
+            try {
+                inputStream = tarStreamFactory.open(range.offset());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            }
+        } else {
+            IOUtils.skipFully(inputStream, range.offset() - position);
+        }
+
+        position = range.offset();
+        remaining = range.length();
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inputStream != null) {
+            inputStream.close();
+            inputStream = null;
+        }
+    }
+}
@@ -9,6 +9,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import jenkins.agents.ControllerToAgentFileCallable;
+import jenkins.plugins.jobcacher.CacheEvents;
+import jenkins.plugins.jobcacher.CacheSizeAccounting;
 
 public class ZipArbitraryFileCacheStrategy extends AbstractCompressingArbitraryFileCacheStrategy {
 
@@ -19,28 +21,51 @@ public class ZipArbitraryFileCacheStrategy extends AbstractCompressingArbitraryF
 
     @Override
     protected void uncompress(FilePath source, FilePath target) throws IOException, InterruptedException {
-        source.unzip(target);
+        source.act(new ExtractZipCallable(target));
     }
 
     @Override
-    protected void compress(
-            FilePath source, String includes, String excludes, boolean useDefaultExcludes, FilePath target)
+    protected long compress(
+            FilePath source,
+            FilePath manifest,
+            FilePath target,
+            FilePath index,
+            long maxSize,
+            CacheSizeAccounting accounting)
             throws IOException, InterruptedException {
-        target.act(new CreateZipCallable(source, includes, excludes, useDefaultExcludes));
+        return target.act(new CreateZipCallable(source, manifest, maxSize, accounting));
     }
 
-    private record CreateZipCallable(FilePath source, String includes, String excludes, boolean useDefaultExcludes)
-            implements ControllerToAgentFileCallable<Void> {
+    private record CreateZipCallable(FilePath source, FilePath manifest, long maxSize, CacheSizeAccounting accounting)
+            implements ControllerToAgentFileCallable<Long> {
 
         @Override
-        public Void invoke(File targetFile, VirtualChannel channel) throws IOException, InterruptedException {
-            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(targetFile.toPath()))) {
-                source.archive(
-                        ArchiverFactory.ZIP,
-                        outputStream,
-                        new SymlinkSafeDirScanner(includes, excludes, useDefaultExcludes));
+        public Long invoke(File targetFile, VirtualChannel channel) throws IOException, InterruptedException {
+            CacheEvents.Archive event = new CacheEvents.Archive();
+            event.begin();
+            CacheManifest cacheManifest = CacheManifest.read(manifest);
+
+            CacheSizeLimiter limiter = new CacheSizeLimiter(maxSize, accounting);
+            limiter.limit(cacheManifest);
+            try (OutputStream outputStream =
+                    new BufferedOutputStream(limiter.limit(Files.newOutputStream(targetFile.toPath())))) {
+                source.archive(ArchiverFactory.ZIP, outputStream, new SymlinkSafeDirScanner(cacheManifest));
             }
 
+            commitArchiveEvent(event, "create", ".zip", source, targetFile);
+            return limiter.getSize();
+        }
+    }
+
+    private record ExtractZipCallable(FilePath target) implements ControllerToAgentFileCallable<Void> {
+
+        @Override
+        public Void invoke(File sourceFile, VirtualChannel channel) throws IOException, InterruptedException {
+            CacheEvents.Archive event = new CacheEvents.Archive();
+            event.begin();
+            new FilePath(sourceFile).unzip(target);
+
+            commitArchiveEvent(event, "extract", ".zip", target, sourceFile);
             return null;
         }
     }
@@ -0,0 +1,163 @@
+package jenkins.plugins.jobcacher.pipeline;
+
+import hudson.model.Computer;
+import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jenkins.plugins.jobcacher.Cache;
+
+/**
+ * A restore of caches running in the background while the body of a {@link CacheStep} with {@code async: true}
+ * executes. The handle is passed to the body as a context object, so that {@link WaitForCacheStep} can block until
+ * the restore is complete, and it is kept by the step to wait for the restore before the caches are saved.
+ *
+ * <p>Restores are only tracked in memory. If the controller restarts while a restore is running, the restore is
+ * lost and the caches are not saved at the end of the step.
+ */
+public final class AsyncRestore implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final Map<String, Task> RESTORES = new ConcurrentHashMap<>();
+
+    private final String id;
+
+    private AsyncRestore(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Starts restoring caches in the background.
+     *
+     * @param restore Restores the caches and returns their savers
+     * @return The handle of the restore
+     */
+    static AsyncRestore start(Callable<List<Cache.Saver>> restore) {
+        String id = UUID.randomUUID().toString();
+        Task task = new Task();
+        RESTORES.put(id, task);
+        task.execution = Computer.threadPoolForRemoting.submit(() -> {
+            if (!task.started.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                task.result.complete(restore.call());
+            } catch (Throwable t) {
+                task.result.completeExceptionally(t);
+            }
+        });
+        return new AsyncRestore(id);
+    }
+
+    /**
+     * Interrupts the restore if it is still running, for instance because the body of the step has failed or the
+     * build has been aborted. A restore interrupted while extracting a cache deletes what it has extracted so far, so
+     * {@link #awaitQuietly()} still has to be called before the workspace is released.
+     */
+    void cancel() {
+        Task task = RESTORES.get(id);
+        if (task == null) {
+            return;
+        }
+
+        if (task.started.compareAndSet(false, true)) {
+            // the restore never starts, so nobody else completes it
+            task.result.cancel(false);
+        }
+        if (task.execution != null) {
+            task.execution.cancel(true);
+        }
+    }
+
+    /**
+     * Waits until the restore is complete.
+     *
+     * @return The savers of the restored caches, or null if the restore has been lost by a restart of the controller
+     * @throws IOException If restoring the caches has failed
+     */
+    List<Cache.Saver> await() throws IOException, InterruptedException {
+        Task task = RESTORES.get(id);
+        if (task == null) {
+            return null;
+        }
+
+        try {
+            return task.result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Gets the savers of the restored caches without waiting.
+     *
+     * @return The savers, or null if the restore is still running, has failed or has been lost
+     */
+    List<Cache.Saver> getNow() {
+        Task task = RESTORES.get(id);
+        if (task == null || !task.result.isDone() || task.result.isCompletedExceptionally()) {
+            return null;
+        }
+        return task.result.join();
+    }
+
+    /**
+     * Waits until the restore is complete, ignoring whether it has failed, so that the workspace is not released
+     * while files are still being extracted.
+     */
+    void awaitQuietly() throws InterruptedException {
+        Task task = RESTORES.get(id);
+        if (task == null) {
+            return;
+        }
+
+        try {
+            task.result.get();
+        } catch (ExecutionException | CancellationException e) {
+            // reported by await()
+        }
+    }
+
+    /**
+     * Forgets the restore once the step is complete.
+     */
+    void remove() {
+        RESTORES.remove(id);
+    }
+
+    /**
+     * The result of a restore and the thread pool task running it, which is interrupted to cancel the restore.
+     */
+    private static final class Task {
+
+        private final CompletableFuture<List<Cache.Saver>> result = new CompletableFuture<>();
+
+        /**
+         * Whether the restore has started, or has been cancelled before it could.
+         */
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private volatile Future<?> execution;
+    }
+}
@@ -0,0 +1,39 @@
+package jenkins.plugins.jobcacher.pipeline;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+import jenkins.plugins.jobcacher.Cache;
+
+/**
+ * The caches restored by {@link CacheRestoreStep}, which is returned to the pipeline and passed to
+ * {@link CacheSaveStep} to save them. It is serialized with the program of the pipeline, so that the caches can be
+ * saved after a restart of the controller.
+ */
+public final class CacheHandle implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final List<Cache> caches;
+    private final List<Cache.Saver> cacheSavers;
+    private final String defaultBranch;
+
+    CacheHandle(List<Cache> caches, List<Cache.Saver> cacheSavers, String defaultBranch) {
+        this.caches = caches;
+        this.cacheSavers = cacheSavers;
+        this.defaultBranch = defaultBranch;
+    }
+
+    List<Cache> getCaches() {
+        return caches;
+    }
+
+    List<Cache.Saver> getCacheSavers() {
+        return cacheSavers;
+    }
+
+    String getDefaultBranch() {
+        return defaultBranch;
+    }
+}
@@ -0,0 +1,130 @@
+package jenkins.plugins.jobcacher.pipeline;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.Serial;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import jenkins.model.Jenkins;
+import jenkins.plugins.itemstorage.GlobalItemStorage;
+import jenkins.plugins.jobcacher.Cache;
+import jenkins.plugins.jobcacher.CacheDescriptor;
+import jenkins.plugins.jobcacher.CacheManager;
+import jenkins.plugins.jobcacher.Messages;
+import org.jenkinsci.plugins.workflow.steps.GeneralNonBlockingStepExecution;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Workflow step that seeds the specified paths with the caches of a previous run and returns a {@link CacheHandle},
+ * which is passed to {@link CacheSaveStep} to save the caches at any later point of the pipeline.
+ */
+public class CacheRestoreStep extends Step {
+
+    private final List<Cache> caches;
+
+    private String defaultBranch;
+
+    @DataBoundConstructor
+    public CacheRestoreStep(List<Cache> caches) {
+        this.caches = caches;
+    }
+
+    @DataBoundSetter
+    @SuppressWarnings("unused")
+    public void setDefaultBranch(String defaultBranch) {
+        this.defaultBranch = defaultBranch;
+    }
+
+    @SuppressWarnings("unused")
+    public String getDefaultBranch() {
+        return defaultBranch;
+    }
+
+    public List<Cache> getCaches() {
+        return caches;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(context, caches, defaultBranch);
+    }
+
+    private static class Execution extends GeneralNonBlockingStepExecution {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final List<Cache> caches;
+        private final String defaultBranch;
+
+        Execution(StepContext context, List<Cache> caches, String defaultBranch) {
+            super(context);
+            this.caches = caches;
+            this.defaultBranch = defaultBranch;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            run(this::execute);
+            return false;
+        }
+
+        private void execute() throws Exception {
+            StepContext context = getContext();
+
+            List<Cache.Saver> cacheSavers = CacheManager.cache(
+                    GlobalItemStorage.get().getStorage(),
+                    context.get(Run.class),
+                    context.get(FilePath.class),
+                    context.get(Launcher.class),
+                    context.get(TaskListener.class),
+                    context.get(EnvVars.class),
+                    caches,
+                    defaultBranch,
+                    false);
+
+            context.onSuccess(new CacheHandle(caches, cacheSavers, defaultBranch));
+        }
+    }
+
+    @Extension(optional = true)
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(Run.class, FilePath.class, Launcher.class, TaskListener.class, EnvVars.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "cacheRestore";
+        }
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.CacheRestoreStep_DisplayName();
+        }
+
+        @SuppressWarnings("unused")
+        public List<CacheDescriptor> getCacheDescriptors() {
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            if (jenkins != null) {
+                return jenkins.getDescriptorList(Cache.class);
+            } else {
+                return Collections.emptyList();
+            }
+        }
+    }
+}
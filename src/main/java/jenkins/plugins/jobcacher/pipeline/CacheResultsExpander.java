@@ -0,0 +1,84 @@
+package jenkins.plugins.jobcacher.pipeline;
+
+import hudson.EnvVars;
+import java.io.Serial;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import jenkins.plugins.jobcacher.Cache;
+import jenkins.plugins.jobcacher.CacheStats;
+import org.jenkinsci.plugins.workflow.steps.EnvironmentExpander;
+
+/**
+ * Exposes the results of restoring the caches of a {@link CacheStep} to its body as environment variables, so that
+ * e.g. installing dependencies can be skipped if they have been restored from an up-to-date cache.
+ *
+ * <ul>
+ *     <li>{@code CACHE_HIT} is {@code true} if all caches have been restored from their up-to-date job specific
+ *     cache, or for keyed caches the version with the exact key</li>
+ *     <li>{@code CACHE_RESULT_<NAME>} is {@code HIT}, {@code FALLBACK} or {@code MISS} for each cache</li>
+ *     <li>{@code CACHE_RESTORE_MILLIS_<NAME>} is the time spent restoring each cache</li>
+ * </ul>
+ *
+ * The name of a cache is its path and name, if any, in upper case with all other characters than letters and digits
+ * replaced by underscores.
+ */
+class CacheResultsExpander extends EnvironmentExpander {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final List<Cache.Saver> cacheSavers;
+    private final AsyncRestore restore;
+
+    /**
+     * @param cacheSavers The savers of the restored caches
+     */
+    CacheResultsExpander(List<Cache.Saver> cacheSavers) {
+        this.cacheSavers = cacheSavers;
+        this.restore = null;
+    }
+
+    /**
+     * @param restore The restore running in the background, the variables are only set once it is complete
+     */
+    CacheResultsExpander(AsyncRestore restore) {
+        this.cacheSavers = null;
+        this.restore = restore;
+    }
+
+    @Override
+    public void expand(EnvVars env) {
+        List<Cache.Saver> savers = restore != null ? restore.getNow() : cacheSavers;
+        if (savers != null) {
+            env.overrideAll(toEnvironment(savers));
+        }
+    }
+
+    static Map<String, String> toEnvironment(List<Cache.Saver> cacheSavers) {
+        Map<String, String> environment = new LinkedHashMap<>();
+        boolean hit = !cacheSavers.isEmpty();
+        for (Cache.Saver saver : cacheSavers) {
+            CacheStats stats = saver.getStats();
+            if (stats == null) {
+                hit = false;
+                continue;
+            }
+
+            CacheStats.Lookup result = stats.isRestored() ? stats.getLookup() : CacheStats.Lookup.MISS;
+            hit &= result == CacheStats.Lookup.HIT;
+
+            String name = toVariableName(stats.getCache());
+            environment.put("CACHE_RESULT_" + name, result.name());
+            environment.put("CACHE_RESTORE_MILLIS_" + name, Long.toString(stats.getRestoreMillis()));
+        }
+        environment.put("CACHE_HIT", Boolean.toString(hit));
+        return environment;
+    }
+
+    static String toVariableName(String cache) {
+        String name = cache.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]+", "_");
+        return name.replaceAll("^_+|_+$", "");
+    }
+}
@@ -0,0 +1,170 @@
+package jenkins.plugins.jobcacher.pipeline;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ListBoxModel;
+import java.io.Serial;
+import java.util.Set;
+import jenkins.plugins.itemstorage.GlobalItemStorage;
+import jenkins.plugins.jobcacher.CacheManager;
+import jenkins.plugins.jobcacher.CacheSizeAccounting;
+import jenkins.plugins.jobcacher.MaxCacheSizePolicy;
+import jenkins.plugins.jobcacher.Messages;
+import org.jenkinsci.plugins.workflow.steps.GeneralNonBlockingStepExecution;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Workflow step that saves the caches restored by {@link CacheRestoreStep} to the configured item storage.
+ */
+public class CacheSaveStep extends Step {
+
+    private final CacheHandle handle;
+    private Long maxCacheSize;
+    private MaxCacheSizePolicy maxCacheSizePolicy;
+    private CacheSizeAccounting maxCacheSizeAccounting;
+
+    @DataBoundConstructor
+    public CacheSaveStep(CacheHandle handle) {
+        this.handle = handle;
+    }
+
+    public CacheHandle getHandle() {
+        return handle;
+    }
+
+    @DataBoundSetter
+    @SuppressWarnings("unused")
+    public void setMaxCacheSize(Long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    @SuppressWarnings("unused")
+    public Long getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    @DataBoundSetter
+    @SuppressWarnings("unused")
+    public void setMaxCacheSizePolicy(MaxCacheSizePolicy maxCacheSizePolicy) {
+        this.maxCacheSizePolicy = maxCacheSizePolicy;
+    }
+
+    @SuppressWarnings("unused")
+    public MaxCacheSizePolicy getMaxCacheSizePolicy() {
+        return maxCacheSizePolicy;
+    }
+
+    @DataBoundSetter
+    @SuppressWarnings("unused")
+    public void setMaxCacheSizeAccounting(CacheSizeAccounting maxCacheSizeAccounting) {
+        this.maxCacheSizeAccounting = maxCacheSizeAccounting;
+    }
+
+    @SuppressWarnings("unused")
+    public CacheSizeAccounting getMaxCacheSizeAccounting() {
+        return maxCacheSizeAccounting;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(context, handle, maxCacheSize, maxCacheSizePolicy, maxCacheSizeAccounting);
+    }
+
+    private static class Execution extends GeneralNonBlockingStepExecution {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final CacheHandle handle;
+        private final Long maxCacheSize;
+        private final MaxCacheSizePolicy maxCacheSizePolicy;
+        private final CacheSizeAccounting maxCacheSizeAccounting;
+
+        Execution(
+                StepContext context,
+                CacheHandle handle,
+                Long maxCacheSize,
+                MaxCacheSizePolicy maxCacheSizePolicy,
+                CacheSizeAccounting maxCacheSizeAccounting) {
+            super(context);
+            this.handle = handle;
+            this.maxCacheSize = maxCacheSize;
+            this.maxCacheSizePolicy = maxCacheSizePolicy;
+            this.maxCacheSizeAccounting = maxCacheSizeAccounting;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            run(this::execute);
+            return false;
+        }
+
+        private void execute() throws Exception {
+            StepContext context = getContext();
+
+            CacheManager.save(
+                    GlobalItemStorage.get().getStorage(),
+                    context.get(Run.class),
+                    context.get(FilePath.class),
+                    context.get(Launcher.class),
+                    context.get(TaskListener.class),
+                    maxCacheSize,
+                    maxCacheSizePolicy,
+                    maxCacheSizeAccounting,
+                    handle.getCaches(),
+                    handle.getCacheSavers(),
+                    handle.getDefaultBranch());
+
+            context.onSuccess(null);
+        }
+    }
+
+    @Extension(optional = true)
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(Run.class, FilePath.class, Launcher.class, TaskListener.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "cacheSave";
+        }
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.CacheSaveStep_DisplayName();
+        }
+
+        @SuppressWarnings("unused")
+        public ListBoxModel doFillMaxCacheSizePolicyItems() {
+            ListBoxModel items = new ListBoxModel();
+            for (MaxCacheSizePolicy policy : MaxCacheSizePolicy.values()) {
+                items.add(policy.name());
+            }
+
+            return items;
+        }
+
+        @SuppressWarnings("unused")
+        public ListBoxModel doFillMaxCacheSizeAccountingItems() {
+            ListBoxModel items = new ListBoxModel();
+            for (CacheSizeAccounting accounting : CacheSizeAccounting.values()) {
+                items.add(accounting.name());
+            }
+
+            return items;
+        }
+    }
+}
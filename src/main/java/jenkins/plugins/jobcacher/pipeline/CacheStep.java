@@ -26,12 +26,15 @@ package jenkins.plugins.jobcacher.pipeline;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
+import hudson.util.ListBoxModel;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import jenkins.model.Jenkins;
 import jenkins.plugins.jobcacher.Cache;
 import jenkins.plugins.jobcacher.CacheDescriptor;
+import jenkins.plugins.jobcacher.CacheSizeAccounting;
+import jenkins.plugins.jobcacher.MaxCacheSizePolicy;
 import jenkins.plugins.jobcacher.Messages;
 import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
@@ -48,8 +51,11 @@ public class CacheStep extends Step {
 
     private final List<Cache> caches;
     private Long maxCacheSize;
+    private MaxCacheSizePolicy maxCacheSizePolicy;
+    private CacheSizeAccounting maxCacheSizeAccounting;
     private boolean skipSave;
     private boolean skipRestore;
+    private boolean async;
 
     private String defaultBranch;
 
@@ -81,6 +87,28 @@ public class CacheStep extends Step {
         return maxCacheSize;
     }
 
+    @DataBoundSetter
+    @SuppressWarnings("unused")
+    public void setMaxCacheSizePolicy(MaxCacheSizePolicy maxCacheSizePolicy) {
+        this.maxCacheSizePolicy = maxCacheSizePolicy;
+    }
+
+    @SuppressWarnings("unused")
+    public MaxCacheSizePolicy getMaxCacheSizePolicy() {
+        return maxCacheSizePolicy;
+    }
+
+    @DataBoundSetter
+    @SuppressWarnings("unused")
+    public void setMaxCacheSizeAccounting(CacheSizeAccounting maxCacheSizeAccounting) {
+        this.maxCacheSizeAccounting = maxCacheSizeAccounting;
+    }
+
+    @SuppressWarnings("unused")
+    public CacheSizeAccounting getMaxCacheSizeAccounting() {
+        return maxCacheSizeAccounting;
+    }
+
     @DataBoundSetter
     @SuppressWarnings("unused")
     public void setSkipSave(boolean skipSave) {
@@ -103,13 +131,33 @@ public class CacheStep extends Step {
         return skipRestore;
     }
 
+    @DataBoundSetter
+    @SuppressWarnings("unused")
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    @SuppressWarnings("unused")
+    public boolean getAsync() {
+        return async;
+    }
+
     public List<Cache> getCaches() {
         return caches;
     }
 
     @Override
     public StepExecution start(StepContext context) throws Exception {
-        return new CacheStepExecution(context, maxCacheSize, skipSave, skipRestore, caches, defaultBranch);
+        return new CacheStepExecution(
+                context,
+                maxCacheSize,
+                maxCacheSizePolicy,
+                maxCacheSizeAccounting,
+                skipSave,
+                skipRestore,
+                async,
+                caches,
+                defaultBranch);
     }
 
     @Extension(optional = true)
@@ -145,5 +193,25 @@ public class CacheStep extends Step {
                 return Collections.emptyList();
             }
         }
+
+        @SuppressWarnings("unused")
+        public ListBoxModel doFillMaxCacheSizePolicyItems() {
+            ListBoxModel items = new ListBoxModel();
+            for (MaxCacheSizePolicy policy : MaxCacheSizePolicy.values()) {
+                items.add(policy.name());
+            }
+
+            return items;
+        }
+
+        @SuppressWarnings("unused")
+        public ListBoxModel doFillMaxCacheSizeAccountingItems() {
+            ListBoxModel items = new ListBoxModel();
+            for (CacheSizeAccounting accounting : CacheSizeAccounting.values()) {
+                items.add(accounting.name());
+            }
+
+            return items;
+        }
     }
 }
@@ -8,10 +8,14 @@ import hudson.model.TaskListener;
 import java.io.IOException;
 import java.io.Serial;
 import java.util.List;
+import java.util.concurrent.Callable;
 import jenkins.plugins.itemstorage.GlobalItemStorage;
 import jenkins.plugins.jobcacher.Cache;
 import jenkins.plugins.jobcacher.CacheManager;
+import jenkins.plugins.jobcacher.CacheSizeAccounting;
+import jenkins.plugins.jobcacher.MaxCacheSizePolicy;
 import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.EnvironmentExpander;
 import org.jenkinsci.plugins.workflow.steps.GeneralNonBlockingStepExecution;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 
@@ -21,25 +25,39 @@ public class CacheStepExecution extends GeneralNonBlockingStepExecution {
     private static final long serialVersionUID = 1L;
 
     private final Long maxCacheSize;
+    private final MaxCacheSizePolicy maxCacheSizePolicy;
+    private final CacheSizeAccounting maxCacheSizeAccounting;
     private final boolean skipSave;
     private final boolean skipRestore;
+    private final boolean async;
     private final List<Cache> caches;
     private final String defaultBranch;
 
+    /**
+     * The restore running in the background if the step is asynchronous, which is cancelled when the step is stopped.
+     */
+    private volatile AsyncRestore asyncRestore;
+
     protected CacheStepExecution(
             StepContext context,
             Long maxCacheSize,
+            MaxCacheSizePolicy maxCacheSizePolicy,
+            CacheSizeAccounting maxCacheSizeAccounting,
             boolean skipSave,
             boolean skipRestore,
+            boolean async,
             List<Cache> caches,
             String defaultBranch) {
         super(context);
 
         this.maxCacheSize = maxCacheSize;
+        this.maxCacheSizePolicy = maxCacheSizePolicy;
+        this.maxCacheSizeAccounting = maxCacheSizeAccounting;
         this.caches = caches;
         this.defaultBranch = defaultBranch;
         this.skipSave = skipSave;
         this.skipRestore = skipRestore;
+        this.async = async;
     }
 
     @Override
@@ -48,6 +66,15 @@ public class CacheStepExecution extends GeneralNonBlockingStepExecution {
         return false;
     }
 
+    @Override
+    public void stop(Throwable cause) throws Exception {
+        AsyncRestore restore = asyncRestore;
+        if (restore != null) {
+            restore.cancel();
+        }
+        super.stop(cause);
+    }
+
     private void execute() throws Exception {
         StepContext context = getContext();
 
@@ -57,7 +84,7 @@ public class CacheStepExecution extends GeneralNonBlockingStepExecution {
         TaskListener listener = context.get(TaskListener.class);
         EnvVars initialEnvironment = context.get(EnvVars.class);
 
-        List<Cache.Saver> cacheSavers = CacheManager.cache(
+        Callable<List<Cache.Saver>> restore = () -> CacheManager.cache(
                 GlobalItemStorage.get().getStorage(),
                 run,
                 workspace,
@@ -68,9 +95,28 @@ public class CacheStepExecution extends GeneralNonBlockingStepExecution {
                 defaultBranch,
                 skipRestore);
 
+        if (async) {
+            listener.getLogger().println("Restoring caches in the background, use waitForCache to wait for them");
+            AsyncRestore asyncRestore = AsyncRestore.start(restore);
+            this.asyncRestore = asyncRestore;
+            context.newBodyInvoker()
+                    .withContexts(
+                            asyncRestore,
+                            EnvironmentExpander.merge(
+                                    context.get(EnvironmentExpander.class), new CacheResultsExpander(asyncRestore)))
+                    .withCallback(new AsyncExecutionCallback(
+                            maxCacheSize, maxCacheSizePolicy, maxCacheSizeAccounting, skipSave, caches, asyncRestore))
+                    .start();
+            return;
+        }
+
+        List<Cache.Saver> cacheSavers = restore.call();
         context.newBodyInvoker()
                 .withContext(context)
-                .withCallback(new NonBlockingExecutionCallback(maxCacheSize, skipSave, caches, cacheSavers))
+                .withContext(EnvironmentExpander.merge(
+                        context.get(EnvironmentExpander.class), new CacheResultsExpander(cacheSavers)))
+                .withCallback(new NonBlockingExecutionCallback(
+                        maxCacheSize, maxCacheSizePolicy, maxCacheSizeAccounting, skipSave, caches, cacheSavers))
                 .start();
     }
 
@@ -80,13 +126,22 @@ public class CacheStepExecution extends GeneralNonBlockingStepExecution {
         private static final long serialVersionUID = 1L;
 
         private final Long maxCacheSize;
+        private final MaxCacheSizePolicy maxCacheSizePolicy;
+        private final CacheSizeAccounting maxCacheSizeAccounting;
         private final boolean skipSave;
         private final List<Cache> caches;
         private final List<Cache.Saver> cacheSavers;
 
         public NonBlockingExecutionCallback(
-                Long maxCacheSize, boolean skipSave, List<Cache> caches, List<Cache.Saver> cacheSavers) {
+                Long maxCacheSize,
+                MaxCacheSizePolicy maxCacheSizePolicy,
+                CacheSizeAccounting maxCacheSizeAccounting,
+                boolean skipSave,
+                List<Cache> caches,
+                List<Cache.Saver> cacheSavers) {
             this.maxCacheSize = maxCacheSize;
+            this.maxCacheSizePolicy = maxCacheSizePolicy;
+            this.maxCacheSizeAccounting = maxCacheSizeAccounting;
             this.skipSave = skipSave;
             this.caches = caches;
             this.cacheSavers = cacheSavers;
@@ -127,12 +182,89 @@ public class CacheStepExecution extends GeneralNonBlockingStepExecution {
                     launcher,
                     listener,
                     maxCacheSize,
+                    maxCacheSizePolicy,
+                    maxCacheSizeAccounting,
                     caches,
                     cacheSavers,
                     defaultBranch);
         }
     }
 
+    /**
+     * Waits for the caches restored in the background before they are saved. If the body fails, the restore is
+     * cancelled and waited for before the failure is reported, so that the workspace is not released while files are
+     * still being extracted or cleaned up.
+     */
+    private class AsyncExecutionCallback extends BodyExecutionCallback {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final Long maxCacheSize;
+        private final MaxCacheSizePolicy maxCacheSizePolicy;
+        private final CacheSizeAccounting maxCacheSizeAccounting;
+        private final boolean skipSave;
+        private final List<Cache> caches;
+        private final AsyncRestore restore;
+
+        public AsyncExecutionCallback(
+                Long maxCacheSize,
+                MaxCacheSizePolicy maxCacheSizePolicy,
+                CacheSizeAccounting maxCacheSizeAccounting,
+                boolean skipSave,
+                List<Cache> caches,
+                AsyncRestore restore) {
+            this.maxCacheSize = maxCacheSize;
+            this.maxCacheSizePolicy = maxCacheSizePolicy;
+            this.maxCacheSizeAccounting = maxCacheSizeAccounting;
+            this.skipSave = skipSave;
+            this.caches = caches;
+            this.restore = restore;
+        }
+
+        @Override
+        public void onSuccess(StepContext context, Object result) {
+            run(() -> {
+                try {
+                    List<Cache.Saver> cacheSavers = restore.await();
+                    if (cacheSavers == null) {
+                        context.get(TaskListener.class)
+                                .getLogger()
+                                .println("Skipping save as the restore of the caches has been lost by a restart");
+                    } else {
+                        new NonBlockingExecutionCallback(
+                                        maxCacheSize,
+                                        maxCacheSizePolicy,
+                                        maxCacheSizeAccounting,
+                                        skipSave,
+                                        caches,
+                                        cacheSavers)
+                                .complete(context);
+                    }
+
+                    context.onSuccess(result);
+                } catch (Throwable t) {
+                    context.onFailure(t);
+                } finally {
+                    restore.remove();
+                }
+            });
+        }
+
+        @Override
+        public void onFailure(StepContext context, Throwable t) {
+            run(() -> {
+                try {
+                    restore.cancel();
+                    restore.awaitQuietly();
+                } finally {
+                    restore.remove();
+                    context.onFailure(t);
+                }
+            });
+        }
+    }
+
     /**
      * This implementation has been replaced with {@link NonBlockingExecutionCallback}, but is kept to not break running builds during upgrade.
      * Remove it if you think there have been enough releases in the meantime.
@@ -188,6 +320,8 @@ public class CacheStepExecution extends GeneralNonBlockingStepExecution {
                     launcher,
                     listener,
                     maxCacheSize,
+                    null,
+                    null,
                     caches,
                     cacheSavers,
                     null);
@@ -0,0 +1,81 @@
+package jenkins.plugins.jobcacher.pipeline;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.model.TaskListener;
+import java.io.Serial;
+import java.util.Set;
+import jenkins.plugins.jobcacher.Messages;
+import org.jenkinsci.plugins.workflow.steps.GeneralNonBlockingStepExecution;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Workflow step that blocks until the caches of the enclosing {@link CacheStep} with {@code async: true} have been
+ * restored, so that the restore can overlap with the steps before it.
+ */
+public class WaitForCacheStep extends Step {
+
+    @DataBoundConstructor
+    public WaitForCacheStep() {}
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(context);
+    }
+
+    private static class Execution extends GeneralNonBlockingStepExecution {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        Execution(StepContext context) {
+            super(context);
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            run(this::execute);
+            return false;
+        }
+
+        private void execute() throws Exception {
+            StepContext context = getContext();
+            AsyncRestore restore = context.get(AsyncRestore.class);
+            if (restore == null) {
+                throw new AbortException("waitForCache can only be used within the body of cache(async: true)");
+            }
+
+            if (restore.await() == null) {
+                context.get(TaskListener.class)
+                        .getLogger()
+                        .println("The restore of the caches has been lost as Jenkins has been restarted");
+            }
+            context.onSuccess(null);
+        }
+    }
+
+    @Extension(optional = true)
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(TaskListener.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "waitForCache";
+        }
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.WaitForCacheStep_DisplayName();
+        }
+    }
+}
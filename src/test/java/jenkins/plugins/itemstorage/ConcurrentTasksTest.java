@@ -0,0 +1,40 @@
+package jenkins.plugins.itemstorage;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class ConcurrentTasksTest {
+
+    @Test
+    @Timeout(60)
+    void testNestedTasksDoNotWaitForPoolThreads() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        int outer = Math.max(1, ConcurrentTasks.THREADS) * 2;
+
+        // more outer tasks than pool threads, each waiting for nested ones
+        ConcurrentTasks.forEach(outer, index -> ConcurrentTasks.forEach(4, nested -> runs.incrementAndGet()));
+
+        assertThat(runs.get(), is(outer * 4));
+    }
+
+    @Test
+    void testFailureIsUnwrapped() {
+        IOException failure = new IOException("test");
+
+        IOException e = assertThrows(
+                IOException.class,
+                () -> ConcurrentTasks.forEach(3, index -> {
+                    if (index == 1) {
+                        throw failure;
+                    }
+                }));
+
+        assertThat(e, sameInstance(failure));
+    }
+}
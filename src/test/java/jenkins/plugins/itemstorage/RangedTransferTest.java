@@ -0,0 +1,89 @@
+package jenkins.plugins.itemstorage;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import hudson.FilePath;
+import hudson.slaves.DumbSlave;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import jenkins.plugins.itemstorage.local.LocalObjectPath;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class RangedTransferTest {
+
+    @TempDir
+    private File tempDir;
+
+    private long originalMinSize;
+
+    @BeforeEach
+    void setUp() {
+        originalMinSize = RangedTransfer.MIN_SIZE;
+        RangedTransfer.MIN_SIZE = 1;
+    }
+
+    @AfterEach
+    void tearDown() {
+        RangedTransfer.MIN_SIZE = originalMinSize;
+    }
+
+    @Test
+    void testSplit() {
+        assertThat(
+                RangedTransfer.split(10, 4),
+                contains(
+                        new RangedTransfer.Range(0, 3),
+                        new RangedTransfer.Range(3, 3),
+                        new RangedTransfer.Range(6, 3),
+                        new RangedTransfer.Range(9, 1)));
+        assertThat(RangedTransfer.split(2, 4), hasSize(2));
+        assertThat(RangedTransfer.split(0, 4), is(List.of()));
+    }
+
+    @Test
+    void testRangedRoundTripWithAgent(JenkinsRule jenkins) throws Exception {
+        DumbSlave agent = jenkins.createOnlineSlave();
+        FilePath agentRoot = agent.getRootPath();
+
+        byte[] content = new byte[1024 * 1024 + 17];
+        new Random(42).nextBytes(content);
+
+        File source = new File(tempDir, "source.bin");
+        Files.write(source.toPath(), content);
+        FilePath agentFile = agentRoot.child("transferred.bin");
+
+        new LocalObjectPath(new FilePath(source)).copyTo(agentFile);
+        assertThat(agentFile.length(), is((long) content.length));
+        try (InputStream inputStream = agentFile.read()) {
+            assertThat(IOUtils.toByteArray(inputStream), is(content));
+        }
+
+        File target = new File(tempDir, "target.bin");
+        new LocalObjectPath(new FilePath(target)).copyFrom(agentFile);
+        assertThat(Files.readAllBytes(target.toPath()), is(content));
+    }
+
+    @Test
+    void testReadRange() throws Exception {
+        File file = new File(tempDir, "file.bin");
+        Files.write(file.toPath(), "0123456789".getBytes());
+
+        LocalObjectPath objectPath = new LocalObjectPath(new FilePath(file));
+        assertThat(objectPath, instanceOf(RangedObjectPath.class));
+        assertThat(objectPath.length(), is(10L));
+        try (InputStream inputStream = objectPath.readRange(3, 4)) {
+            assertThat(new String(IOUtils.toByteArray(inputStream)), is("3456"));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package jenkins.plugins.itemstorage.local;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import hudson.FilePath;
+import hudson.slaves.DumbSlave;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Random;
+import jenkins.plugins.itemstorage.RangedTransfer;
+import org.htmlunit.Page;
+import org.htmlunit.WebRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class HttpTransferActionTest {
+
+    @TempDir
+    private File tempDir;
+
+    @Test
+    void testDownloadToAgent(JenkinsRule jenkins) throws Exception {
+        DumbSlave agent = jenkins.createOnlineSlave();
+
+        // at least RangedTransfer.MIN_SIZE, so that the archive is downloaded in several ranges
+        long length = 64L * 1024 * 1024 + 3;
+        assertThat(RangedTransfer.getStreams(length), greaterThan(1));
+
+        File source = new File(tempDir, "cache.tgz");
+        byte[] chunk = new byte[1024 * 1024];
+        Random random = new Random(42);
+        try (OutputStream outputStream = Files.newOutputStream(source.toPath())) {
+            for (long written = 0; written < length; written += chunk.length) {
+                random.nextBytes(chunk);
+                outputStream.write(chunk, 0, (int) Math.min(chunk.length, length - written));
+            }
+        }
+
+        long servedBytes = HttpTransferAction.servedBytes.get();
+        FilePath target = agent.getRootPath().child("cache.tgz");
+        new LocalObjectPath(new FilePath(source), true).copyTo(target);
+
+        // the transfer falls back to remoting on failures, so make sure it actually went over HTTP
+        assertThat(HttpTransferAction.servedBytes.get() - servedBytes, is(length));
+        assertThat(target.length(), is(length));
+        assertThat(target.digest(), is(new FilePath(source).digest()));
+    }
+
+    @Test
+    void testUnknownTokenIsRejected(JenkinsRule jenkins) throws Exception {
+        JenkinsRule.WebClient webClient = jenkins.createWebClient().withThrowExceptionOnFailingStatusCode(false);
+
+        Page page = webClient.goTo("jobcacher-transfer/unknown-token", null);
+
+        assertThat(page.getWebResponse().getStatusCode(), is(404));
+    }
+
+    @Test
+    void testInvalidRangeIsRejected(JenkinsRule jenkins) throws Exception {
+        File source = new File(tempDir, "cache.tgz");
+        Files.writeString(source.toPath(), "content");
+        String token = HttpTransferAction.grant(source);
+        JenkinsRule.WebClient webClient = jenkins.createWebClient().withThrowExceptionOnFailingStatusCode(false);
+
+        for (String range : new String[] {"bytes=99999999999999999999-", "bytes=0-99999999999999999999", "bytes=7-"}) {
+            WebRequest request = new WebRequest(new URL(jenkins.getURL(), "jobcacher-transfer/" + token));
+            request.setAdditionalHeader("Range", range);
+
+            Page page = webClient.getPage(request);
+
+            assertThat(range, page.getWebResponse().getStatusCode(), is(416));
+            assertThat(page.getWebResponse().getResponseHeaderValue("Content-Range"), is("bytes */7"));
+        }
+    }
+}
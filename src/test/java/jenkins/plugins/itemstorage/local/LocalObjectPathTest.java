@@ -0,0 +1,80 @@
+package jenkins.plugins.itemstorage.local;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import hudson.FilePath;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LocalObjectPathTest {
+
+    @TempDir
+    private File tempDir;
+
+    @Test
+    void testLocalCopyDoesNotModifyPreviousCopies() throws Exception {
+        File archive = new File(tempDir, "cache/archive.tgz");
+        LocalObjectPath objectPath = new LocalObjectPath(new FilePath(archive));
+
+        File firstVersion = write("first-version.tgz", "first");
+        objectPath.copyFrom(new FilePath(firstVersion));
+        assertThat(read(archive), is("first"));
+
+        File restored = write("restored.tgz", "");
+        objectPath.copyTo(new FilePath(restored));
+        assertThat(read(restored), is("first"));
+
+        objectPath.copyFrom(new FilePath(write("second-version.tgz", "second")));
+        assertThat(read(archive), is("second"));
+        assertThat(read(restored), is("first"));
+
+        assertThat(new File(tempDir, "cache").list(), arrayContaining("archive.tgz"));
+    }
+
+    @Test
+    void testRestoredCopyIsNotLinkedToArchive() throws Exception {
+        File archive = new File(tempDir, "cache/archive.tgz");
+        LocalObjectPath objectPath = new LocalObjectPath(new FilePath(archive));
+        objectPath.copyFrom(new FilePath(write("version.tgz", "version")));
+
+        File restored = write("restored.tgz", "");
+        objectPath.copyTo(new FilePath(restored));
+        assertThat(Files.isSameFile(restored.toPath(), archive.toPath()), is(false));
+
+        Files.writeString(restored.toPath(), "modified", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        assertThat(read(archive), is("version"));
+    }
+
+    @Test
+    void testReadRangeRecordsAccess() throws Exception {
+        File archive = write("archive.tgz", "content");
+        FileTime lastWeek = FileTime.from(Instant.now().minus(7, ChronoUnit.DAYS));
+        Files.getFileAttributeView(archive.toPath(), BasicFileAttributeView.class)
+                .setTimes(lastWeek, lastWeek, null);
+
+        new LocalObjectPath(new FilePath(archive)).readRange(0, 3).close();
+
+        BasicFileAttributes attributes = Files.readAttributes(archive.toPath(), BasicFileAttributes.class);
+        assertThat(LocalFiles.getLastUsed(attributes), greaterThan(lastWeek));
+    }
+
+    private File write(String name, String content) throws Exception {
+        File file = new File(tempDir, name);
+        Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static String read(File file) throws Exception {
+        return Files.readString(file.toPath(), StandardCharsets.UTF_8);
+    }
+}
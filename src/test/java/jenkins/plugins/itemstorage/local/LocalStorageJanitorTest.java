@@ -0,0 +1,92 @@
+package jenkins.plugins.itemstorage.local;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import hudson.Util;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import jenkins.plugins.itemstorage.GlobalItemStorage;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class LocalStorageJanitorTest {
+
+    @Test
+    void testEvictsLeastRecentlyUsedCaches(JenkinsRule jenkins) throws Exception {
+        LocalItemStorage storage = (LocalItemStorage) GlobalItemStorage.get().getStorage();
+        FreeStyleProject project1 = jenkins.createFreeStyleProject("project1");
+        FreeStyleProject project2 = jenkins.createFreeStyleProject("project2");
+
+        Path oldest = createCache(storage, project1, "oldest.tgz", 3);
+        Path recent = createCache(storage, project2, "recent.tgz", 1);
+        Path older = createCache(storage, project2, "older.tgz", 2);
+        Path temp = createCache(storage, project2, ".in-progress.tgz.1234.tmp", 4);
+
+        LocalStorageJanitor.evict(LocalStorageJanitor.collectEntries(storage), 1500, TaskListener.NULL);
+
+        assertThat(Files.exists(oldest), is(false));
+        assertThat(Files.exists(older), is(false));
+        assertThat(Files.exists(recent), is(true));
+        assertThat(Files.exists(temp), is(true));
+    }
+
+    @Test
+    void testEvictsWholeCaches(JenkinsRule jenkins) throws Exception {
+        LocalItemStorage storage = (LocalItemStorage) GlobalItemStorage.get().getStorage();
+        FreeStyleProject project = jenkins.createFreeStyleProject("project");
+
+        String oldCache = Util.getDigestOf("old");
+        Path oldArchive = createCache(storage, project, oldCache + ".tgz", 3);
+        Path oldHash = createCache(storage, project, oldCache + ".hash", 3);
+        Path oldShard = createCache(storage, project, oldCache + "-shard0.tgz", 3);
+        String recentCache = Util.getDigestOf("recent");
+        Path recentArchive = createCache(storage, project, recentCache + ".tgz", 2);
+        Path recentKeys = createCache(storage, project, recentCache + ".keys", 1);
+
+        LocalStorageJanitor.evict(LocalStorageJanitor.collectEntries(storage), 2500, TaskListener.NULL);
+
+        assertThat(Files.exists(oldArchive), is(false));
+        assertThat(Files.exists(oldHash), is(false));
+        assertThat(Files.exists(oldShard), is(false));
+        assertThat(Files.exists(recentArchive), is(true));
+        assertThat(Files.exists(recentKeys), is(true));
+    }
+
+    @Test
+    void testKeepsCachesWithinLimit(JenkinsRule jenkins) throws Exception {
+        LocalItemStorage storage = (LocalItemStorage) GlobalItemStorage.get().getStorage();
+        FreeStyleProject project = jenkins.createFreeStyleProject("project");
+
+        Path cache1 = createCache(storage, project, "cache1.tgz", 1);
+        Path cache2 = createCache(storage, project, "cache2.tgz", 2);
+
+        LocalStorageJanitor.evict(LocalStorageJanitor.collectEntries(storage), 2000, TaskListener.NULL);
+
+        assertThat(Files.exists(cache1), is(true));
+        assertThat(Files.exists(cache2), is(true));
+    }
+
+    private static Path createCache(LocalItemStorage storage, FreeStyleProject project, String name, int daysAgo)
+            throws Exception {
+        File cacheDir = new File(storage.getObjectPath(project, "cache").getPath());
+        Files.createDirectories(cacheDir.toPath());
+
+        Path cache = cacheDir.toPath().resolve(name);
+        Files.write(cache, new byte[1000]);
+
+        FileTime time = FileTime.from(Instant.now().minus(daysAgo, ChronoUnit.DAYS));
+        Files.getFileAttributeView(cache, BasicFileAttributeView.class).setTimes(time, time, null);
+
+        return cache;
+    }
+}
@@ -15,6 +15,8 @@ import java.util.Collections;
 import java.util.List;
 import jenkins.branch.Branch;
 import jenkins.branch.BranchSource;
+import jenkins.plugins.itemstorage.GlobalItemStorage;
+import jenkins.plugins.itemstorage.ObjectPath;
 import jenkins.scm.impl.mock.MockSCMHead;
 import jenkins.scm.impl.mock.MockSCMSource;
 import org.apache.commons.lang3.StringUtils;
@@ -148,6 +150,45 @@ class ArbitraryFileCachePipelineTest {
                                 "[Cache for test-path with id 95147d7f3368d66bd7f952b5245a0968] Skip cache creation as the cache is up-to-date")));
     }
 
+    @Test
+    @WithTimeout(600)
+    void testCacheStatsAreRecorded() throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+        String scriptedPipeline = "node('test-agent') {\n"
+                + "    writeFile text: 'abc', file: 'packages.lock.json'\n"
+                + "    cache(caches: [arbitraryFileCache(path: 'test-path', cacheValidityDecidingFile: 'packages.lock.json')]) {\n"
+                + "        " + fileCreationCode("test-path", "test-file") + "\n"
+                + "    }\n"
+                + "}";
+        project.setDefinition(new CpsFlowDefinition(scriptedPipeline, true));
+
+        WorkflowRun run1 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        CacheStats stats1 = run1.getAction(CacheStatsAction.class).getCaches().get(0);
+        assertThat(stats1.getCache(), is("test-path"));
+        assertThat(stats1.getLookup(), is(CacheStats.Lookup.MISS));
+        assertThat(stats1.getRawBytes(), greaterThan(0L));
+        assertThat(stats1.getCompressedBytes(), greaterThan(0L));
+
+        deleteCachedDirectoryInWorkspace(project);
+
+        WorkflowRun run2 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        CacheStats stats2 = run2.getAction(CacheStatsAction.class).getCaches().get(0);
+        assertThat(stats2.getLookup(), is(CacheStats.Lookup.HIT));
+        assertThat(stats2.getRawBytes(), is(0L));
+        assertThat(stats2.getCompressedBytes(), is(stats1.getCompressedBytes()));
+
+        String json = jenkins.createWebClient()
+                .getJSON(run2.getUrl() + "api/json?tree=actions[caches[cache,lookup,compressedBytes]]")
+                .getJSONObject()
+                .toString();
+        assertThat(
+                json,
+                allOf(
+                        containsString("\"cache\":\"test-path\""),
+                        containsString("\"compressedBytes\":" + stats1.getCompressedBytes()),
+                        containsString("\"lookup\":\"HIT\"")));
+    }
+
     @Test
     @WithTimeout(600)
     void testMultipleCacheValidityDecidingFilesCommaSeparated() throws Exception {
@@ -511,6 +552,97 @@ class ArbitraryFileCachePipelineTest {
                         containsString("[Cache for cache3")));
     }
 
+    @Test
+    @WithTimeout(600)
+    void testEvictLargestCacheWhenMaxCacheSizeIsExceeded() throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+
+        String scriptedPipeline = "node('test-agent') {\n"
+                + "    cache(maxCacheSize: 1, maxCacheSizePolicy: 'EVICT_LARGEST', caches: [\n"
+                + "        arbitraryFileCache(path: 'small'),\n"
+                + "        arbitraryFileCache(path: 'large')\n"
+                + "    ]) {\n"
+                + "        echo \"small restored: ${fileExists('small/file.txt')}\"\n"
+                + "        echo \"large restored: ${fileExists('large/file.txt')}\"\n"
+                + "        writeFile text: 'small', file: 'small/file.txt'\n"
+                + "        writeFile text: 'x' * (2 * 1024 * 1024), file: 'large/file.txt'\n"
+                + "    }\n"
+                + "}";
+        project.setDefinition(new CpsFlowDefinition(scriptedPipeline, true));
+
+        WorkflowRun run1 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                run1.getLog(),
+                containsString("Removing largest caches as the job cache has grown beyond configured maximum size"));
+
+        WorkflowRun run2 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                run2.getLog(), allOf(containsString("small restored: true"), containsString("large restored: false")));
+    }
+
+    @Test
+    @WithTimeout(600)
+    void testMaxCacheSizeAccounting() throws Exception {
+        WorkflowJob rawProject = createCompressibleCacheProject("RAW");
+        WorkflowRun rawRun1 = jenkins.assertBuildStatus(Result.SUCCESS, rawProject.scheduleBuild2(0));
+        assertThat(
+                rawRun1.getLog(),
+                containsString("Removing job cache as it has grown beyond configured maximum size of 1M"));
+        WorkflowRun rawRun2 = jenkins.assertBuildStatus(Result.SUCCESS, rawProject.scheduleBuild2(0));
+        assertThat(rawRun2.getLog(), containsString("restored: false"));
+
+        WorkflowJob compressedProject = createCompressibleCacheProject("COMPRESSED");
+        WorkflowRun compressedRun1 = jenkins.assertBuildStatus(Result.SUCCESS, compressedProject.scheduleBuild2(0));
+        assertThat(compressedRun1.getLog(), not(containsString("Removing job cache")));
+        WorkflowRun compressedRun2 = jenkins.assertBuildStatus(Result.SUCCESS, compressedProject.scheduleBuild2(0));
+        assertThat(compressedRun2.getLog(), containsString("restored: true"));
+    }
+
+    @Test
+    @WithTimeout(600)
+    void testUpToDateCachesCountTowardsMaxCacheSize() throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+
+        String scriptedPipeline = "node('test-agent') {\n"
+                + "    cache(maxCacheSize: 1, maxCacheSizeAccounting: 'COMPRESSED', caches: [\n"
+                + "        arbitraryFileCache(path: 'unchanged', cacheValidityDecidingFile: 'unchanged.lock'),\n"
+                + "        arbitraryFileCache(path: 'changed')\n"
+                + "    ]) {\n"
+                + "        writeFile text: 'unchanged', file: 'unchanged.lock'\n"
+                + "        sh 'mkdir -p unchanged changed && head -c 716800 /dev/urandom > unchanged/file.bin'\n"
+                + "        sh \"head -c ${currentBuild.number == 1 ? 1024 : 512000} /dev/urandom > changed/file.bin\"\n"
+                + "    }\n"
+                + "}";
+        project.setDefinition(new CpsFlowDefinition(scriptedPipeline, true));
+
+        WorkflowRun run1 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(run1.getLog(), not(containsString("Removing job cache")));
+
+        // the up-to-date cache is not saved again, but still uses most of the maximum size
+        WorkflowRun run2 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                run2.getLog(),
+                allOf(
+                        containsString("Skip cache creation as the cache is up-to-date"),
+                        containsString("Removing job cache as it has grown beyond configured maximum size of 1M")));
+    }
+
+    private WorkflowJob createCompressibleCacheProject(String accounting) throws IOException {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+
+        String scriptedPipeline = "node('test-agent') {\n"
+                + "    cache(maxCacheSize: 1, maxCacheSizeAccounting: '" + accounting + "', caches: [\n"
+                + "        arbitraryFileCache(path: 'compressible')\n"
+                + "    ]) {\n"
+                + "        echo \"restored: ${fileExists('compressible/file.txt')}\"\n"
+                + "        writeFile text: 'x' * (2 * 1024 * 1024), file: 'compressible/file.txt'\n"
+                + "    }\n"
+                + "}";
+        project.setDefinition(new CpsFlowDefinition(scriptedPipeline, true));
+
+        return project;
+    }
+
     @Test
     @WithTimeout(600)
     void testExternalSymlinksAreDanglingAfterRestoreWithTarGz() throws Exception {
@@ -831,6 +963,314 @@ class ArbitraryFileCachePipelineTest {
                 "[$class: 'ArbitraryFileCache', path: 'test-path', compressionMethod: 'TAR_ZSTD']");
     }
 
+    @Test
+    @WithTimeout(600)
+    void testShardedArbitraryFileCacheWithinPipeline() throws Exception {
+        testArbitraryFileCacheWithinPipeline("arbitraryFileCache(path: 'test-path', shards: 3)");
+    }
+
+    @Test
+    @WithTimeout(600)
+    void testShardedCacheReplacesSingleArchive() throws Exception {
+        WorkflowJob project = createTestProject("arbitraryFileCache(path: 'test-path', compressionMethod: 'TAR')");
+        jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+
+        setProjectDefinition(project, "arbitraryFileCache(path: 'test-path', compressionMethod: 'TAR', shards: 2)");
+        deleteCachedDirectoryInWorkspace(project);
+        WorkflowRun run = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(run.getLog(), containsString("expected output from test file"));
+
+        ObjectPath cachesRoot = CacheManager.getCachePath(GlobalItemStorage.get().getStorage(), project);
+        String baseName = "95147d7f3368d66bd7f952b5245a0968";
+        assertThat(cachesRoot.child(baseName + ".tar").exists(), is(false));
+        assertThat(cachesRoot.child(baseName + ".tar.shards").exists(), is(true));
+        String generation = readShardsGeneration(cachesRoot.child(baseName + ".tar.shards"));
+        assertThat(cachesRoot.child(baseName + "-" + generation + "-shard0.tar").exists(), is(true));
+        assertThat(cachesRoot.child(baseName + "-" + generation + "-shard1.tar").exists(), is(true));
+
+        deleteCachedDirectoryInWorkspace(project);
+        run = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(run.getLog(), containsString("expected output from test file"));
+
+        // saving again replaces the shards of the previous generation
+        String latest = readShardsGeneration(cachesRoot.child(baseName + ".tar.shards"));
+        assertThat(latest, not(generation));
+        assertThat(cachesRoot.child(baseName + "-" + latest + "-shard0.tar").exists(), is(true));
+        assertThat(cachesRoot.child(baseName + "-" + generation + "-shard0.tar").exists(), is(false));
+        assertThat(cachesRoot.child(baseName + "-" + generation + "-shard1.tar").exists(), is(false));
+    }
+
+    private static String readShardsGeneration(ObjectPath shardsFile) throws Exception {
+        FilePath tempFile = jenkins.jenkins.getRootPath().createTempFile("cache", ".shards");
+        try {
+            shardsFile.copyTo(tempFile);
+            return tempFile.readToString().split("\n")[1];
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    @Test
+    @WithTimeout(600)
+    void testPartialRestoreOfTarCache() throws Exception {
+        testPartialRestore("TAR");
+    }
+
+    @Test
+    @WithTimeout(600)
+    void testPartialRestoreOfZstandardCache() throws Exception {
+        testPartialRestore("TAR_ZSTD");
+    }
+
+    @Test
+    @WithTimeout(600)
+    void testPartialRestoreOfZipCacheRestoresWholeCache() throws Exception {
+        WorkflowRun run = runPartialRestore("ZIP");
+        assertThat(
+                run.getLog(),
+                allOf(
+                        containsString("Restoring the whole cache as it cannot be restored partially"),
+                        containsString("module-a restored: true"),
+                        containsString("module-b restored: true"),
+                        containsString(
+                                "[Cache for test-path with id 95147d7f3368d66bd7f952b5245a0968] Creating cache...")));
+    }
+
+    @Test
+    @WithTimeout(600)
+    void testAsyncRestore() throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node('test-agent') {\n"
+                        + "    cache(async: true, caches: [arbitraryFileCache(path: 'test-path')]) {\n"
+                        + "        waitForCache()\n"
+                        + "        echo \"restored: ${fileExists('test-path/test.txt')}, hit: ${env.CACHE_HIT}\"\n"
+                        + "        writeFile text: 'test', file: 'test-path/test.txt'\n"
+                        + "    }\n"
+                        + "}",
+                true));
+
+        WorkflowRun run1 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                run1.getLog(),
+                allOf(
+                        containsString("Restoring caches in the background, use waitForCache to wait for them"),
+                        containsString("restored: false, hit: false"),
+                        containsString(
+                                "[Cache for test-path with id 95147d7f3368d66bd7f952b5245a0968] Creating cache...")));
+
+        deleteCachedDirectoryInWorkspace(project);
+
+        WorkflowRun run2 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                run2.getLog(),
+                allOf(
+                        containsString(
+                                "[Cache for test-path with id 95147d7f3368d66bd7f952b5245a0968] Restoring cache..."),
+                        containsString("restored: true, hit: true")));
+    }
+
+    @Test
+    @WithTimeout(600)
+    void testCacheResultsInEnvironment() throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node('test-agent') {\n"
+                        + "    cache(caches: [arbitraryFileCache(path: 'test-path', cacheName: 'deps')]) {\n"
+                        + "        echo \"hit: ${env.CACHE_HIT}\"\n"
+                        + "        echo \"result: ${env.CACHE_RESULT_TEST_PATH_DEPS}\"\n"
+                        + "        echo \"restore millis set: ${env.CACHE_RESTORE_MILLIS_TEST_PATH_DEPS != null}\"\n"
+                        + "        writeFile text: 'test', file: 'test-path/test.txt'\n"
+                        + "    }\n"
+                        + "    echo \"hit after body: ${env.CACHE_HIT}\"\n"
+                        + "}",
+                true));
+
+        WorkflowRun run1 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                run1.getLog(),
+                allOf(
+                        containsString("hit: false"),
+                        containsString("result: MISS"),
+                        containsString("restore millis set: true"),
+                        containsString("hit after body: null")));
+
+        WorkflowRun run2 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(run2.getLog(), allOf(containsString("hit: true"), containsString("result: HIT")));
+    }
+
+    @Test
+    @WithTimeout(600)
+    void testWaitForCacheOutsideOfAsyncCache() throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node('test-agent') {\n"
+                        + "    cache(caches: [arbitraryFileCache(path: 'test-path')]) {\n"
+                        + "        waitForCache()\n"
+                        + "    }\n"
+                        + "}",
+                true));
+
+        WorkflowRun run = jenkins.assertBuildStatus(Result.FAILURE, project.scheduleBuild2(0));
+        assertThat(run.getLog(), containsString("waitForCache can only be used within the body of cache(async: true)"));
+    }
+
+    @Test
+    @WithTimeout(600)
+    void testSeparateRestoreAndSaveSteps() throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node('test-agent') {\n"
+                        + "    def handle = cacheRestore(caches: [arbitraryFileCache(path: 'test-path')])\n"
+                        + "    echo \"restored: ${fileExists('test-path/test.txt')}\"\n"
+                        + "    echo \"restored after save: ${fileExists('test-path/not-saved.txt')}\"\n"
+                        + "    writeFile text: 'test', file: 'test-path/test.txt'\n"
+                        + "    cacheSave(handle: handle)\n"
+                        + "    writeFile text: 'test', file: 'test-path/not-saved.txt'\n"
+                        + "}",
+                true));
+
+        WorkflowRun run1 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                run1.getLog(),
+                allOf(
+                        containsString("restored: false"),
+                        containsString(
+                                "[Cache for test-path with id 95147d7f3368d66bd7f952b5245a0968] Creating cache...")));
+
+        deleteCachedDirectoryInWorkspace(project);
+
+        WorkflowRun run2 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                run2.getLog(), allOf(containsString("restored: true"), containsString("restored after save: false")));
+    }
+
+    @Test
+    @WithTimeout(600)
+    void testKeyedCache() throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+
+        setKeyedProjectDefinition(project, "v1");
+        WorkflowRun run1 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                run1.getLog(),
+                allOf(
+                        containsString("Skip restoring cache as no up-to-date cache exists"),
+                        containsString(
+                                "[Cache for test-path with id 95147d7f3368d66bd7f952b5245a0968] Creating cache...")));
+
+        deleteCachedDirectoryInWorkspace(project);
+
+        WorkflowRun run2 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                run2.getLog(),
+                allOf(
+                        containsString("in job specific caches"),
+                        containsString("restored: true, result: HIT"),
+                        containsString("Skip cache creation as a cache for the key exists")));
+
+        deleteCachedDirectoryInWorkspace(project);
+        setKeyedProjectDefinition(project, "v2");
+
+        WorkflowRun run3 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                run3.getLog(),
+                allOf(
+                        containsString("Searching cache for restore key deps-..."),
+                        containsString("restored: true, result: FALLBACK"),
+                        containsString(
+                                "[Cache for test-path with id 95147d7f3368d66bd7f952b5245a0968] Creating cache..."),
+                        containsString("as only 1 versions are retained")));
+
+        deleteCachedDirectoryInWorkspace(project);
+
+        WorkflowRun run4 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(run4.getLog(), containsString("restored: true, result: HIT"));
+    }
+
+    @Test
+    @WithTimeout(600)
+    void testKeyedCacheOfDefaultBranchIsHit() throws Exception {
+        WorkflowMultiBranchProject multiBranchProject = jenkins.createProject(WorkflowMultiBranchProject.class);
+        String scriptedPipeline = "node('test-agent') {\n"
+                + "    writeFile text: 'v1', file: 'lock.txt'\n"
+                + "    cache(defaultBranch: 'main', caches: [\n"
+                + "        arbitraryFileCache(path: 'test-path', key: 'deps-${hashFiles:lock.txt}')\n"
+                + "    ]) {\n"
+                + "        echo \"result: ${env.CACHE_RESULT_TEST_PATH}, hit: ${env.CACHE_HIT}\"\n"
+                + "        writeFile text: 'test', file: 'test-path/test.txt'\n"
+                + "    }\n"
+                + "}";
+
+        WorkflowJob mainBranchProject = createWorkflowJob(multiBranchProject, "main");
+        mainBranchProject.setDefinition(new CpsFlowDefinition(scriptedPipeline, true));
+        WorkflowRun run1 = jenkins.assertBuildStatus(Result.SUCCESS, mainBranchProject.scheduleBuild2(0));
+        assertThat(run1.getLog(), containsString("result: MISS, hit: false"));
+
+        WorkflowJob featureBranchProject = createWorkflowJob(multiBranchProject, "feature/test");
+        featureBranchProject.setDefinition(new CpsFlowDefinition(scriptedPipeline, true));
+        WorkflowRun run2 = jenkins.assertBuildStatus(Result.SUCCESS, featureBranchProject.scheduleBuild2(0));
+        assertThat(
+                run2.getLog(),
+                allOf(
+                        containsString("in default caches"),
+                        containsString("result: HIT, hit: true"),
+                        containsString("Skip cache creation as the default caches contain a cache for the key")));
+    }
+
+    private void setKeyedProjectDefinition(WorkflowJob project, String lockFileContent) {
+        project.setDefinition(new CpsFlowDefinition(
+                "node('test-agent') {\n"
+                        + "    writeFile text: '" + lockFileContent + "', file: 'lock.txt'\n"
+                        + "    cache(caches: [arbitraryFileCache(path: 'test-path', key: 'deps-${hashFiles:lock.txt}',"
+                        + " restoreKeys: 'deps-', retainedVersions: 1)]) {\n"
+                        + "        echo \"restored: ${fileExists('test-path/test.txt')},"
+                        + " result: ${env.CACHE_RESULT_TEST_PATH}\"\n"
+                        + "        writeFile text: 'test', file: 'test-path/test.txt'\n"
+                        + "    }\n"
+                        + "}",
+                true));
+    }
+
+    private void testPartialRestore(String compressionMethod) throws Exception {
+        WorkflowRun run = runPartialRestore(compressionMethod);
+        assertThat(
+                run.getLog(),
+                allOf(
+                        containsString("Restored the entries matching module-a/ only"),
+                        containsString("module-a restored: true"),
+                        containsString("module-b restored: false"),
+                        containsString(
+                                "[Cache for test-path with id 95147d7f3368d66bd7f952b5245a0968] Skip cache creation as only a part of the cache has been restored")));
+    }
+
+    private WorkflowRun runPartialRestore(String compressionMethod) throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node('test-agent') {\n"
+                        + "    cache(caches: [arbitraryFileCache(path: 'test-path', compressionMethod: '"
+                        + compressionMethod + "')]) {\n"
+                        + "        writeFile text: 'a', file: 'test-path/module-a/target/a.txt'\n"
+                        + "        writeFile text: 'b', file: 'test-path/module-b/target/b.txt'\n"
+                        + "    }\n"
+                        + "}",
+                true));
+        jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+
+        deleteCachedDirectoryInWorkspace(project);
+
+        project.setDefinition(new CpsFlowDefinition(
+                "node('test-agent') {\n"
+                        + "    cache(caches: [arbitraryFileCache(path: 'test-path', compressionMethod: '"
+                        + compressionMethod + "', restoreIncludes: 'module-a/')]) {\n"
+                        + "        echo \"module-a restored: ${fileExists('test-path/module-a/target/a.txt')}\"\n"
+                        + "        echo \"module-b restored: ${fileExists('test-path/module-b/target/b.txt')}\"\n"
+                        + "    }\n"
+                        + "}",
+                true));
+        return jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+    }
+
     private void testArbitraryFileCacheWithinPipeline(String cacheDefinition) throws Exception {
         WorkflowJob project = createTestProject(cacheDefinition);
 
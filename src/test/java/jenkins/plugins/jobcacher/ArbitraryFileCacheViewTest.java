@@ -1,12 +1,15 @@
 package jenkins.plugins.jobcacher;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 
 import hudson.model.Result;
 import jenkins.plugins.itemstorage.GlobalItemStorage;
 import jenkins.plugins.itemstorage.ObjectPath;
 import org.htmlunit.Page;
+import org.htmlunit.html.HtmlPage;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
@@ -85,6 +88,52 @@ class ArbitraryFileCacheViewTest {
         assertCacheViewStatus(project, 200);
     }
 
+    @Test
+    @WithTimeout(120)
+    void browsesIndexedTarZstdCache() throws Exception {
+        assertIndexedCacheIsBrowsable("TAR_ZSTD");
+    }
+
+    @Test
+    @WithTimeout(120)
+    void browsesIndexedTarCache() throws Exception {
+        assertIndexedCacheIsBrowsable("TAR");
+    }
+
+    private void assertIndexedCacheIsBrowsable(String compressionMethod) throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node {\n"
+                        + "  cache(caches: [arbitraryFileCache(path: 'test-path', compressionMethod: '"
+                        + compressionMethod + "')]) {\n"
+                        + "    writeFile text: 'first-content', file: 'test-path/first.txt'\n"
+                        + "    writeFile text: 'second-content', file: 'test-path/dir/second.txt'\n"
+                        + "  }\n"
+                        + "}",
+                true));
+        jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+
+        try (JenkinsRule.WebClient wc = jenkins.createWebClient()) {
+            wc.setThrowExceptionOnFailingStatusCode(false);
+            String url = project.getUrl() + "cache/caches/0/";
+
+            HtmlPage root = wc.goTo(url);
+            assertThat(root.asNormalizedText(), allOf(containsString("first.txt"), containsString("dir/")));
+
+            HtmlPage dir = wc.goTo(url + "dir/");
+            assertThat(dir.asNormalizedText(), containsString("second.txt"));
+
+            Page second = wc.goTo(url + "dir/second.txt", null);
+            assertThat(second.getWebResponse().getContentAsString(), is("second-content"));
+
+            Page first = wc.goTo(url + "first.txt", null);
+            assertThat(first.getWebResponse().getContentAsString(), is("first-content"));
+
+            Page missing = wc.goTo(url + "missing.txt", null);
+            assertThat(missing.getWebResponse().getStatusCode(), is(404));
+        }
+    }
+
     private WorkflowJob createProjectWithCache(String compressionMethod) throws Exception {
         WorkflowJob project = jenkins.createProject(WorkflowJob.class);
         String pipeline = "node {\n"
@@ -0,0 +1,149 @@
+package jenkins.plugins.jobcacher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import hudson.model.Result;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class CacheEventListenerTest {
+
+    @Test
+    void testEventsAreFired(JenkinsRule jenkins) throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node {\n"
+                        + "    writeFile text: 'abc', file: 'packages.lock.json'\n"
+                        + "    cache(caches: [arbitraryFileCache(path: 'test-path', cacheValidityDecidingFile:"
+                        + " 'packages.lock.json')]) {\n"
+                        + "        writeFile text: 'content', file: 'test-path/test-file'\n"
+                        + "    }\n"
+                        + "}",
+                true));
+
+        Recorder recorder =
+                jenkins.jenkins.getExtensionList(CacheEventListener.class).get(Recorder.class);
+
+        WorkflowRun run1 = jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                recorder.events,
+                contains(
+                        instanceOf(CacheEventListener.OperationStarted.class),
+                        instanceOf(CacheEventListener.LockAcquired.class),
+                        instanceOf(CacheEventListener.LookupResolved.class),
+                        instanceOf(CacheEventListener.LockReleased.class),
+                        instanceOf(CacheEventListener.OperationFinished.class),
+                        instanceOf(CacheEventListener.OperationStarted.class),
+                        instanceOf(CacheEventListener.LockAcquired.class),
+                        instanceOf(CacheEventListener.SaveStarted.class),
+                        instanceOf(CacheEventListener.SaveFinished.class),
+                        instanceOf(CacheEventListener.LockReleased.class),
+                        instanceOf(CacheEventListener.OperationFinished.class)));
+        CacheEventListener.OperationFinished restoreOperation =
+                (CacheEventListener.OperationFinished) recorder.events.get(4);
+        assertThat(restoreOperation.operation(), is(CacheEventListener.Operation.RESTORE));
+        assertThat(restoreOperation.caches(), is(1));
+        CacheEventListener.SaveFinished saveFinished = (CacheEventListener.SaveFinished) recorder.events.get(8);
+        assertThat(saveFinished.run(), is(run1));
+        assertThat(saveFinished.cache(), is("test-path"));
+        assertThat(saveFinished.compressionMethod(), is("TARGZ"));
+        assertThat(saveFinished.successful(), is(true));
+        assertThat(saveFinished.rawBytes(), is(7L));
+        assertThat(saveFinished.bytes(), greaterThan(0L));
+
+        recorder.events.clear();
+        jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        assertThat(
+                recorder.events,
+                contains(
+                        instanceOf(CacheEventListener.OperationStarted.class),
+                        instanceOf(CacheEventListener.LockAcquired.class),
+                        instanceOf(CacheEventListener.LookupResolved.class),
+                        instanceOf(CacheEventListener.RestoreStarted.class),
+                        instanceOf(CacheEventListener.RestoreFinished.class),
+                        instanceOf(CacheEventListener.LockReleased.class),
+                        instanceOf(CacheEventListener.OperationFinished.class),
+                        instanceOf(CacheEventListener.OperationStarted.class),
+                        instanceOf(CacheEventListener.LockAcquired.class),
+                        instanceOf(CacheEventListener.SaveSkipped.class),
+                        instanceOf(CacheEventListener.LockReleased.class),
+                        instanceOf(CacheEventListener.OperationFinished.class)));
+        CacheEventListener.LookupResolved lookupResolved = (CacheEventListener.LookupResolved) recorder.events.get(2);
+        assertThat(lookupResolved.lookup(), is(CacheStats.Lookup.HIT));
+        CacheEventListener.RestoreFinished restoreFinished =
+                (CacheEventListener.RestoreFinished) recorder.events.get(4);
+        assertThat(restoreFinished.compressionMethod(), is("TARGZ"));
+        assertThat(restoreFinished.successful(), is(true));
+        assertThat(restoreFinished.bytes(), is(saveFinished.bytes()));
+    }
+
+    @TestExtension
+    public static class Recorder extends CacheEventListener {
+
+        private final List<Record> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onOperationStarted(OperationStarted event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onOperationFinished(OperationFinished event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onLookupResolved(LookupResolved event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onRestoreStarted(RestoreStarted event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onRestoreFinished(RestoreFinished event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onSaveSkipped(SaveSkipped event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onSaveStarted(SaveStarted event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onSaveFinished(SaveFinished event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onEvicted(Evicted event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onLockAcquired(LockAcquired event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onLockReleased(LockReleased event) {
+            events.add(event);
+        }
+    }
+}
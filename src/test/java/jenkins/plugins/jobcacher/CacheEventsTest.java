@@ -0,0 +1,76 @@
+package jenkins.plugins.jobcacher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import hudson.model.Result;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class CacheEventsTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void testEventsAreRecorded(JenkinsRule jenkins) throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class, "test-job");
+        project.setDefinition(new CpsFlowDefinition(
+                "node {\n"
+                    + "    cache(caches: [arbitraryFileCache(path: 'test-path', compressionMethod: 'TAR_ZSTD')]) {\n"
+                    + "        writeFile text: 'content', file: 'test-path/test-file'\n"
+                    + "    }\n"
+                    + "}",
+                true));
+
+        Path file = tempDir.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            for (Class<?> type : List.of(
+                    CacheEvents.Operation.class,
+                    CacheEvents.Restore.class,
+                    CacheEvents.Save.class,
+                    CacheEvents.Archive.class,
+                    CacheEvents.Transfer.class)) {
+                recording.enable(type.getAnnotation(Name.class).value()).withoutThreshold();
+            }
+            recording.start();
+
+            jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+            jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertThat(eventsOf(events, "Operation"), hasSize(4));
+        assertThat(eventsOf(events, "Save"), hasSize(2));
+        assertThat(eventsOf(events, "Archive"), hasSize(3));
+        assertThat(eventsOf(events, "Transfer"), hasSize(3));
+
+        List<RecordedEvent> restores = eventsOf(events, "Restore");
+        assertThat(restores, hasSize(1));
+        RecordedEvent restore = restores.get(0);
+        assertThat(restore.getString("job"), is("test-job"));
+        assertThat(restore.getString("cache"), is("test-path"));
+        assertThat(restore.getString("compressionMethod"), is("TAR_ZSTD"));
+        assertThat(restore.getLong("bytes"), greaterThan(0L));
+    }
+
+    private static List<RecordedEvent> eventsOf(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals("jenkins.plugins.jobcacher." + name))
+                .toList();
+    }
+}
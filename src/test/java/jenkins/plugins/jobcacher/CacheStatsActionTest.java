@@ -0,0 +1,39 @@
+package jenkins.plugins.jobcacher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import hudson.util.XStream2;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link CacheStatsAction} to ensure savers continue with the recorded statistics after a resume.
+ */
+class CacheStatsActionTest {
+
+    @Test
+    void testResolveReturnsRecordedStatsForDeserializedCopy() {
+        CacheStats stats = new CacheStats("path");
+        CacheStatsAction action = new CacheStatsAction();
+        action.add(new CacheStats("other"));
+        action.add(stats);
+
+        // The saver and the action are deserialized separately when a build resumes
+        XStream2 xstream = new XStream2();
+        CacheStats copy = (CacheStats) xstream.fromXML(xstream.toXML(stats));
+
+        assertThat(action.resolve(copy), sameInstance(stats));
+        assertThat(action.resolve(stats), sameInstance(stats));
+    }
+
+    @Test
+    void testResolveReturnsGivenStatsIfNoneAreRecorded() {
+        CacheStatsAction action = new CacheStatsAction();
+        action.add(new CacheStats("other"));
+
+        CacheStats stats = new CacheStats("path");
+
+        assertThat(action.resolve(stats), sameInstance(stats));
+        assertThat(action.getCaches(), hasSize(1));
+    }
+}
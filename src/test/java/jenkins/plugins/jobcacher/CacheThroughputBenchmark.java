@@ -0,0 +1,230 @@
+package jenkins.plugins.jobcacher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import com.sun.management.OperatingSystemMXBean;
+import hudson.Util;
+import hudson.model.Label;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.StringParameterDefinition;
+import hudson.model.StringParameterValue;
+import hudson.slaves.DumbSlave;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import jenkins.plugins.jobcacher.benchmark.SyntheticTree;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepEndNode;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+import org.jvnet.hudson.test.recipes.WithTimeout;
+
+/**
+ * Runs concurrent builds of a pipeline using the {@code cache} step against the default {@code LocalItemStorage}
+ * and logs the restore and save latency, the time spent waiting for the cache lock of the job and the CPU time of
+ * the controller. Each build runs on its own local agent, so that the CPU time of the test JVM is the CPU time of the
+ * controller.
+ *
+ * <p>It is disabled by default and run with
+ * {@code mvn test -Dtest=CacheThroughputBenchmark -DthroughputBenchmark=true}. The parameters are comma-separated
+ * lists of which all combinations are run:
+ * <ul>
+ *     <li>{@code throughputBenchmark.cacheSizes}: the size of the cache in MiB</li>
+ *     <li>{@code throughputBenchmark.fileCounts}: the number of files in the cache</li>
+ *     <li>{@code throughputBenchmark.compressionMethods}: the compression methods</li>
+ *     <li>{@code throughputBenchmark.concurrency}: the number of concurrent builds</li>
+ * </ul>
+ * {@code throughputBenchmark.rounds} sets how often the concurrent builds are run after a first round that creates
+ * the cache.
+ */
+@WithJenkins
+@EnabledIfSystemProperty(named = "throughputBenchmark", matches = "true")
+class CacheThroughputBenchmark {
+
+    private static final int ROUNDS = Integer.getInteger("throughputBenchmark.rounds", 3);
+
+    private static final Logger LOG = Logger.getLogger(CacheThroughputBenchmark.class.getName());
+
+    private static JenkinsRule jenkins;
+
+    private static final List<DumbSlave> agents = new ArrayList<>();
+
+    @BeforeAll
+    static void setUp(JenkinsRule rule) {
+        jenkins = rule;
+    }
+
+    static Stream<Arguments> parameters() {
+        List<Arguments> parameters = new ArrayList<>();
+        for (String cacheSize : property("cacheSizes", "10,100")) {
+            for (String fileCount : property("fileCounts", "1000")) {
+                for (String compressionMethod : property("compressionMethods", "TARGZ,TAR_ZSTD")) {
+                    for (String concurrency : property("concurrency", "1,4,8")) {
+                        parameters.add(Arguments.of(
+                                Long.parseLong(cacheSize),
+                                Integer.parseInt(fileCount),
+                                compressionMethod,
+                                Integer.parseInt(concurrency)));
+                    }
+                }
+            }
+        }
+        return parameters.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("parameters")
+    @WithTimeout(3600)
+    void benchmark(long cacheSize, int fileCount, String compressionMethod, int concurrency) throws Exception {
+        while (agents.size() < concurrency) {
+            agents.add(jenkins.createSlave(Label.get("benchmark-" + agents.size())));
+        }
+        for (int slot = 0; slot < concurrency; slot++) {
+            DumbSlave agent = jenkins.waitOnline(agents.get(slot));
+            Path workspace = Path.of(agent.getRemoteFS(), "workspace", "benchmark");
+            Util.deleteRecursive(workspace.toFile());
+            SyntheticTree.writeFiles(workspace.resolve("data"), fileCount, cacheSize * 1024 * 1024);
+        }
+
+        WorkflowJob job = jenkins.createProject(WorkflowJob.class);
+        job.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("SLOT", "0")));
+        job.setDefinition(new CpsFlowDefinition(
+                "node('benchmark-' + params.SLOT) {\n"
+                        + "    ws('benchmark') {\n"
+                        + "        cache(caches: [arbitraryFileCache(path: 'data', compressionMethod: '"
+                        + compressionMethod + "')]) {\n"
+                        + "            echo 'cached'\n"
+                        + "        }\n"
+                        + "    }\n"
+                        + "}",
+                true));
+
+        // the first round creates the cache that is restored by all other rounds
+        runConcurrently(job, concurrency);
+
+        OperatingSystemMXBean os = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long cpuStart = os.getProcessCpuTime();
+        long wallStart = System.nanoTime();
+        List<Long> restores = new ArrayList<>();
+        List<Long> saves = new ArrayList<>();
+        List<Long> lockWaits = new ArrayList<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (WorkflowRun run : runConcurrently(job, concurrency)) {
+                long[] timings = cacheStepTimings(run);
+                restores.add(timings[1] - timings[0]);
+                saves.add(timings[3] - timings[2]);
+                lockWaits.add(lockWaitMillis(run));
+            }
+        }
+        long cpu = TimeUnit.NANOSECONDS.toMillis(os.getProcessCpuTime() - cpuStart);
+        long wall = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart);
+
+        LOG.info(String.format(
+                "cacheSize=%dMiB fileCount=%d compressionMethod=%s concurrency=%d builds=%d%n"
+                        + "  restore ms: %s%n  save ms: %s%n  lock wait ms: %s%n"
+                        + "  controller cpu: %d ms in %d ms (%.1f cores)",
+                cacheSize,
+                fileCount,
+                compressionMethod,
+                concurrency,
+                restores.size(),
+                summary(restores),
+                summary(saves),
+                summary(lockWaits),
+                cpu,
+                wall,
+                (double) cpu / wall));
+        assertThat(restores, hasSize(ROUNDS * concurrency));
+    }
+
+    private static List<WorkflowRun> runConcurrently(WorkflowJob job, int concurrency) throws Exception {
+        List<Queue.Item> items = new ArrayList<>();
+        for (int slot = 0; slot < concurrency; slot++) {
+            items.add(Queue.getInstance()
+                    .schedule2(job, 0, new ParametersAction(new StringParameterValue("SLOT", String.valueOf(slot))))
+                    .getItem());
+        }
+
+        List<WorkflowRun> runs = new ArrayList<>();
+        for (Queue.Item item : items) {
+            runs.add(jenkins.assertBuildStatus(
+                    Result.SUCCESS, (WorkflowRun) item.getFuture().get()));
+        }
+        return runs;
+    }
+
+    /**
+     * Gets the start of the cache step, the start and end of its body and the end of the step from the flow graph.
+     */
+    private static long[] cacheStepTimings(WorkflowRun run) {
+        long[] timings = new long[4];
+        for (FlowNode node : new DepthFirstScanner().allNodes(run.getExecution())) {
+            StepStartNode start = node instanceof StepEndNode end ? end.getStartNode() : null;
+            if (node instanceof StepStartNode startNode) {
+                start = startNode;
+            }
+            if (start == null
+                    || start.getDescriptor() == null
+                    || !"cache".equals(start.getDescriptor().getFunctionName())) {
+                continue;
+            }
+
+            boolean end = node instanceof StepEndNode;
+            int index = start.isBody() ? (end ? 2 : 1) : (end ? 3 : 0);
+            timings[index] = TimingAction.getStartTime(node);
+        }
+        return timings;
+    }
+
+    /**
+     * Gets the time the build waited for the cache lock of the job when restoring and saving its caches, as recorded
+     * in the statistics of the build.
+     */
+    private static long lockWaitMillis(WorkflowRun run) {
+        CacheStatsAction action = run.getAction(CacheStatsAction.class);
+        assertThat(action, notNullValue());
+        return action.getCaches().stream()
+                .mapToLong(CacheStats::getLockWaitMillis)
+                .sum();
+    }
+
+    private static String summary(List<Long> values) {
+        if (values.isEmpty()) {
+            return "none";
+        }
+
+        Collections.sort(values);
+        return String.format(
+                "median=%d p95=%d max=%d total=%d",
+                values.get(values.size() / 2),
+                values.get((int) Math.ceil(values.size() * 0.95) - 1),
+                values.get(values.size() - 1),
+                values.stream().mapToLong(Long::longValue).sum());
+    }
+
+    private static List<String> property(String name, String defaultValue) {
+        return Arrays.asList(
+                System.getProperty("throughputBenchmark." + name, defaultValue).split("\\s*,\\s*"));
+    }
+}
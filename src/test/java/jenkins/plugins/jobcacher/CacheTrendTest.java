@@ -0,0 +1,80 @@
+package jenkins.plugins.jobcacher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import hudson.model.Result;
+import java.util.List;
+import org.htmlunit.html.HtmlPage;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class CacheTrendTest {
+
+    @Test
+    void testTrendsAreComputed(JenkinsRule jenkins) throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node {\n"
+                        + "    writeFile text: 'abc', file: 'packages.lock.json'\n"
+                        + "    cache(caches: [arbitraryFileCache(path: 'test-path', cacheValidityDecidingFile:"
+                        + " 'packages.lock.json')]) {\n"
+                        + "        writeFile text: 'content', file: 'test-path/test-file'\n"
+                        + "    }\n"
+                        + "}",
+                true));
+
+        jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+
+        List<CacheTrend> trends = CacheTrend.of(project);
+        assertThat(trends, hasSize(1));
+        CacheTrend trend = trends.get(0);
+        assertThat(trend.getCache(), is("test-path"));
+        assertThat(trend.getBuilds(), hasSize(3));
+        assertThat(trend.getBuilds().get(0).getNumber(), is(1));
+        assertThat(trend.getBuilds().get(0).getLookup(), is(CacheStats.Lookup.MISS));
+        assertThat(trend.getHits(), is(2));
+        assertThat(trend.getHitRate(), is(66));
+        assertThat(trend.getAverageCompressedBytes(), greaterThan(0L));
+        assertThat(trend.getEstimatedTimeSaved(), notNullValue());
+        assertThat(trend.getBars(), hasSize(3));
+        assertThat(CacheTrend.getHitRate(trends), is(66));
+
+        HtmlPage page = jenkins.createWebClient().getPage(project, "cache");
+        assertThat(
+                page.asNormalizedText(),
+                containsString("Hit rate of all caches over the last 30 completed builds: 66%"));
+    }
+
+    @Test
+    void testTrendsAreLimitedToMaxBuilds(JenkinsRule jenkins) throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node {\n"
+                        + "    cache(caches: [arbitraryFileCache(path: 'test-path')]) {\n"
+                        + "        writeFile text: 'content', file: 'test-path/test-file'\n"
+                        + "    }\n"
+                        + "}",
+                true));
+
+        int maxBuilds = CacheTrend.MAX_BUILDS;
+        CacheTrend.MAX_BUILDS = 2;
+        try {
+            for (int i = 0; i < 3; i++) {
+                jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+            }
+
+            List<CacheTrend> trends = CacheTrend.of(project);
+            assertThat(trends.get(0).getBuilds(), hasSize(2));
+            assertThat(trends.get(0).getBuilds().get(0).getNumber(), is(2));
+        } finally {
+            CacheTrend.MAX_BUILDS = maxBuilds;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package jenkins.plugins.jobcacher;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import com.codahale.metrics.MetricRegistry;
+import hudson.model.Result;
+import jenkins.metrics.api.Metrics;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class MetricsCacheEventListenerTest {
+
+    @Test
+    void testMetricsAreRecorded(JenkinsRule jenkins) throws Exception {
+        WorkflowJob project = jenkins.createProject(WorkflowJob.class);
+        project.setDefinition(new CpsFlowDefinition(
+                "node {\n"
+                    + "    cache(caches: [arbitraryFileCache(path: 'test-path', compressionMethod: 'TAR_ZSTD')]) {\n"
+                    + "        writeFile text: 'content', file: 'test-path/test-file'\n"
+                    + "    }\n"
+                    + "}",
+                true));
+
+        jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+        jenkins.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0));
+
+        MetricRegistry registry = Metrics.metricRegistry();
+        assertThat(registry.counter("jobcacher.lookup.miss").getCount(), is(1L));
+        assertThat(registry.counter("jobcacher.lookup.hit").getCount(), is(1L));
+        assertThat(registry.timer("jobcacher.save.tar_zstd").getCount(), is(2L));
+        assertThat(registry.timer("jobcacher.restore.tar_zstd").getCount(), is(1L));
+        assertThat(registry.meter("jobcacher.save.bytes").getCount(), greaterThan(0L));
+        assertThat(registry.timer("jobcacher.lock.wait").getCount(), is(4L));
+        assertThat(registry.getGauges().get("jobcacher.operations.active").getValue(), is(0L));
+    }
+}
@@ -0,0 +1,89 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CacheManifestTest {
+
+    @TempDir
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+
+        Files.createDirectories(dir.resolve("bin"));
+        Files.writeString(dir.resolve("bin/tool"), "#!/bin/sh");
+        Files.setPosixFilePermissions(dir.resolve("bin/tool"), PosixFilePermissions.fromString("rwxr-x---"));
+        Files.writeString(dir.resolve("README"), "readme");
+        Files.writeString(dir.resolve("build.log"), "log");
+        Files.createSymbolicLink(dir.resolve("tool"), Path.of("bin/tool"));
+    }
+
+    @Test
+    void testScan() throws IOException {
+        CacheManifest manifest = CacheManifest.scan(dir.toFile(), "**/*", "*.log", true);
+
+        assertThat(
+                manifest.getFiles().stream()
+                        .map(CacheManifest.Entry::relativePath)
+                        .toList(),
+                contains("README", "bin/tool"));
+        assertThat(
+                manifest.getSymlinks().stream()
+                        .map(CacheManifest.Entry::relativePath)
+                        .toList(),
+                contains("tool"));
+        assertThat(manifest.getSize(), is(15L));
+        assertThat(manifest.getFiles().get(1).mode(), is(0750));
+    }
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        CacheManifest manifest = CacheManifest.scan(dir.toFile(), "**/*", null, true);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        manifest.write(outputStream);
+        CacheManifest read = CacheManifest.read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        assertThat(read.getFiles(), is(manifest.getFiles()));
+        assertThat(read.getSymlinks(), is(manifest.getSymlinks()));
+        assertThat(read.getSize(), is(manifest.getSize()));
+    }
+
+    @Test
+    void testSplit() throws IOException {
+        CacheManifest manifest = CacheManifest.scan(dir.toFile(), "**/*", null, true);
+
+        List<CacheManifest> shards = manifest.split(2);
+
+        assertThat(shards, hasSize(2));
+        assertThat(
+                shards.get(0).getFiles().stream()
+                        .map(CacheManifest.Entry::relativePath)
+                        .toList(),
+                contains("bin/tool"));
+        assertThat(
+                shards.get(1).getFiles().stream()
+                        .map(CacheManifest.Entry::relativePath)
+                        .toList(),
+                contains("README", "build.log"));
+        assertThat(shards.get(0).getSize(), is(9L));
+        assertThat(shards.get(1).getSize(), is(9L));
+        assertThat(shards.get(0).getSymlinks(), hasSize(1));
+        assertThat(shards.get(1).getSymlinks(), empty());
+    }
+}
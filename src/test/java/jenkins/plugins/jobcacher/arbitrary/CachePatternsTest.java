@@ -0,0 +1,107 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import hudson.Util;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.lang3.SystemUtils;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CachePatternsTest {
+
+    @TempDir
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+
+        write("pom.xml");
+        write("module/pom.xml");
+        write("module/src/Main.java");
+        write(".git/config");
+        write("target/module/pom.xml");
+        Files.createSymbolicLink(dir.resolve("linked"), Path.of("module"));
+    }
+
+    @Test
+    void testListMatchesAntDirectoryScanner() throws IOException {
+        String[][] patterns = {{"**/pom.xml", null}, {"**/pom.xml", "target/"}, {"pom.xml", null}, {"", "**/*.xml"}};
+        for (String[] pattern : patterns) {
+            for (boolean followSymlinks : new boolean[] {true, false}) {
+                List<String> files = CachePatterns.compile(dir.toFile(), pattern[0], pattern[1], true)
+                        .list(dir.toFile(), followSymlinks);
+
+                assertThat(
+                        Arrays.toString(pattern) + " followSymlinks=" + followSymlinks,
+                        files,
+                        is(listWithAnt(pattern[0], pattern[1], followSymlinks)));
+            }
+        }
+    }
+
+    @Test
+    void testParallelWalkIsDeterministic() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            write("many/" + i % 4 + "/" + i + ".txt");
+        }
+        CachePatterns patterns = CachePatterns.compile(dir.toFile(), "**/*", null, true);
+
+        List<String> expected = listWithAnt("**/*", null, false);
+        for (int i = 0; i < 5; i++) {
+            assertThat(patterns.list(dir.toFile(), false), is(expected));
+        }
+    }
+
+    @Test
+    void testCouldHoldMatches() {
+        CachePatterns patterns = CachePatterns.compile(dir.toFile(), "module/**/*.java, pom.xml", "target/**", true);
+
+        assertThat(patterns.couldHoldMatches(new TokenizedPath("module")), is(true));
+        assertThat(patterns.couldHoldMatches(new TokenizedPath("module/src")), is(true));
+        assertThat(patterns.couldHoldMatches(new TokenizedPath("target")), is(false));
+        assertThat(patterns.couldHoldMatches(new TokenizedPath(".git")), is(false));
+        assertThat(patterns.couldHoldMatches(new TokenizedPath("other")), is(false));
+    }
+
+    @Test
+    void testWalkDoesNotDescendIntoExcludedDirectories() throws IOException {
+        File excluded = dir.resolve("target").toFile();
+        assumeFalse(!excluded.setReadable(false) || excluded.canRead());
+        try {
+            List<String> files = CachePatterns.compile(dir.toFile(), "**/*", "target/**", true)
+                    .list(dir.toFile(), false);
+
+            assertThat(files, contains("module/pom.xml", "module/src/Main.java", "pom.xml"));
+        } finally {
+            excluded.setReadable(true);
+        }
+    }
+
+    private void write(String relativePath) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, relativePath);
+    }
+
+    private List<String> listWithAnt(String includes, String excludes, boolean followSymlinks) {
+        FileSet fs = Util.createFileSet(dir.toFile(), includes, excludes);
+        fs.setFollowSymlinks(followSymlinks);
+
+        DirectoryScanner ds = fs.getDirectoryScanner(new Project());
+        return Arrays.asList(ds.getIncludedFiles());
+    }
+}
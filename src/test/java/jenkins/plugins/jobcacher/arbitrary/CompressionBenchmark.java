@@ -0,0 +1,114 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import hudson.FilePath;
+import hudson.Util;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.plugins.jobcacher.ArbitraryFileCache.CompressionMethod;
+import jenkins.plugins.jobcacher.CacheSizeAccounting;
+import jenkins.plugins.jobcacher.benchmark.SyntheticTree;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures how fast the supported compression methods archive and extract typical caches. The {@code gc} profiler
+ * of the {@code BenchmarkRunner} reports the allocation rate, the {@link Sizes} counters the compression ratio.
+ */
+@JmhBenchmark
+public class CompressionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Cache {
+
+        @Param({"TAR", "TARGZ", "TARGZ_BEST_SPEED", "TAR_ZSTD", "ZIP"})
+        public CompressionMethod compressionMethod;
+
+        @Param({"MAVEN_REPOSITORY", "NODE_MODULES", "BUILD_OUTPUT"})
+        public SyntheticTree tree;
+
+        AbstractCompressingArbitraryFileCacheStrategy strategy;
+        Path dir;
+        FilePath source;
+        FilePath manifest;
+        FilePath archive;
+        long rawSize;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException, InterruptedException {
+            strategy = (AbstractCompressingArbitraryFileCacheStrategy) compressionMethod.getCacheStrategy();
+            dir = Files.createTempDirectory("jobcacher-benchmark");
+            source = new FilePath(tree.create(dir).toFile());
+            manifest = new FilePath(dir.resolve("cache.manifest").toFile());
+            rawSize = manifest.act(new CacheManifest.CreateCallable(source, "**/*", null, true));
+
+            // the archive extracted by the extract benchmark and overwritten by the compress benchmark
+            archive = new FilePath(
+                    dir.resolve("cache" + strategy.getArchiveExtension()).toFile());
+            archive(this);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Util.deleteRecursive(dir.toFile());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ExtractTarget {
+
+        FilePath target;
+
+        @Setup(Level.Invocation)
+        public void setUp(Cache cache) throws IOException {
+            target = new FilePath(
+                    Files.createTempDirectory(cache.dir, "extracted").toFile());
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException, InterruptedException {
+            target.deleteRecursive();
+        }
+    }
+
+    /**
+     * The bytes read and written by the compress benchmark, the compression ratio is {@code rawBytes / archiveBytes}.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Sizes {
+
+        public long rawBytes;
+        public long archiveBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rawBytes = 0;
+            archiveBytes = 0;
+        }
+    }
+
+    @Benchmark
+    public void compress(Cache cache, Sizes sizes) throws IOException, InterruptedException {
+        archive(cache);
+        sizes.rawBytes += cache.rawSize;
+        sizes.archiveBytes += cache.archive.length();
+    }
+
+    @Benchmark
+    public void extract(Cache cache, ExtractTarget target) throws IOException, InterruptedException {
+        cache.strategy.uncompress(cache.archive, target.target);
+    }
+
+    private static void archive(Cache cache) throws IOException, InterruptedException {
+        cache.strategy.compress(
+                cache.source, cache.manifest, cache.archive, null, Long.MAX_VALUE, CacheSizeAccounting.RAW);
+    }
+}
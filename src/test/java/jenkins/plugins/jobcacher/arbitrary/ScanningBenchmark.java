@@ -0,0 +1,149 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import hudson.Util;
+import hudson.util.FileVisitor;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.plugins.jobcacher.Cache;
+import jenkins.plugins.jobcacher.benchmark.SyntheticTree;
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the directory walks done while a cache is saved and while its validity is decided. The {@link Entries}
+ * counter reports the entries per second, dividing the {@code gc.alloc.rate} of the {@code gc} profiler by it gives
+ * the allocation per entry.
+ */
+@JmhBenchmark
+public class ScanningBenchmark {
+
+    public enum Patterns {
+        ALL("**/*", null),
+        EXTENSIONS("**/*.java, **/*.js, **/*.class", "**/tmp*/**"),
+        EXCLUDED_DIRECTORIES("**/*", "**/target*/**, **/node_modules*/**, **/*.tmp"),
+        VALIDITY_FILES("**/pom.xml, **/package.json", null);
+
+        private final String includes;
+        private final String excludes;
+
+        Patterns(String includes, String excludes) {
+            this.includes = includes;
+            this.excludes = excludes;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Tree {
+
+        @Param({"DEEP_TREE", "WIDE_TREE", "NODE_MODULES"})
+        public SyntheticTree tree;
+
+        @Param({"ALL", "EXTENSIONS", "EXCLUDED_DIRECTORIES", "VALIDITY_FILES"})
+        public Patterns patterns;
+
+        Path dir;
+        File root;
+        List<TokenizedPath> paths;
+        int files;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("jobcacher-benchmark");
+            root = tree.create(dir).toFile();
+
+            // all files of the tree, to match the patterns without walking it
+            paths = CachePatterns.compile(root, "**/*", null, false).list(root, false).stream()
+                    .map(TokenizedPath::new)
+                    .toList();
+            files = CachePatterns.compile(root, patterns.includes, patterns.excludes, true)
+                    .list(root, false)
+                    .size();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Util.deleteRecursive(dir.toFile());
+        }
+    }
+
+    /**
+     * The entries visited or matched, reported per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Entries {
+
+        public long entries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            entries = 0;
+        }
+    }
+
+    @Benchmark
+    public void symlinkSafeDirScanner(Tree tree, Entries entries, Blackhole blackhole) throws IOException {
+        new SymlinkSafeDirScanner(tree.patterns.includes, tree.patterns.excludes, true)
+                .scan(tree.root, new FileVisitor() {
+                    @Override
+                    public void visit(File f, String relativePath) {
+                        blackhole.consume(relativePath);
+                        entries.entries++;
+                    }
+
+                    @Override
+                    public void visitSymlink(File link, String target, String relativePath) {
+                        blackhole.consume(target);
+                        entries.entries++;
+                    }
+
+                    @Override
+                    public boolean understandsSymlink() {
+                        return true;
+                    }
+                });
+    }
+
+    @Benchmark
+    public CacheManifest cacheManifest(Tree tree, Entries entries) throws IOException {
+        CacheManifest manifest = CacheManifest.scan(tree.root, tree.patterns.includes, tree.patterns.excludes, true);
+        entries.entries += manifest.getFiles().size() + manifest.getSymlinks().size();
+        return manifest;
+    }
+
+    @Benchmark
+    public long directorySize(Tree tree, Entries entries) throws IOException {
+        entries.entries += tree.files;
+        return new Cache.DirectorySize(tree.patterns.includes, tree.patterns.excludes).invoke(tree.root, null);
+    }
+
+    @Benchmark
+    public List<String> validityFiles(Tree tree, Entries entries) throws IOException {
+        // the discovery of cacheValidityDecidingFile follows symlinks
+        List<String> files = CachePatterns.compile(tree.root, tree.patterns.includes, tree.patterns.excludes, true)
+                .list(tree.root, true);
+        entries.entries += files.size();
+        return files;
+    }
+
+    @Benchmark
+    public void matchFiles(Tree tree, Entries entries, Blackhole blackhole) {
+        CachePatterns patterns = CachePatterns.compile(tree.root, tree.patterns.includes, tree.patterns.excludes, true);
+        for (TokenizedPath path : tree.paths) {
+            blackhole.consume(patterns.matchesFile(path));
+        }
+        entries.entries += tree.paths.size();
+    }
+}
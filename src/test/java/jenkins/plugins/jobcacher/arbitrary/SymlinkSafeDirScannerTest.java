@@ -0,0 +1,150 @@
+package jenkins.plugins.jobcacher.arbitrary;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import hudson.Util;
+import hudson.util.FileVisitor;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.lang3.SystemUtils;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.FileSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SymlinkSafeDirScannerTest {
+
+    @TempDir
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+
+        write("a.txt");
+        write("b.log");
+        write("src/Main.java");
+        write("src/main/Other.java");
+        write("src/main/notes.txt");
+        write(".git/config");
+        write(".git/objects/pack");
+        write("node_modules/module/index.js");
+        Files.createDirectories(dir.resolve("node_modules/.bin"));
+        Files.createSymbolicLink(dir.resolve("node_modules/.bin/module"), Path.of("../module/index.js"));
+        Files.createSymbolicLink(dir.resolve(".git/link"), Path.of("config"));
+        Files.createSymbolicLink(dir.resolve("outside"), Path.of("/tmp"));
+    }
+
+    @Test
+    void testRealFilesMatchAntDirectoryScanner() throws IOException {
+        String[][] patterns = {
+            {"**/*", null}, {"**/*.java", "src/main/**"}, {"src/", null}, {"*", "*.log"}, {"src/Main.java", "**/.git"}
+        };
+        for (String[] pattern : patterns) {
+            for (boolean useDefaultExcludes : new boolean[] {true, false}) {
+                List<String> visited =
+                        scan(new SymlinkSafeDirScanner(pattern[0], pattern[1], useDefaultExcludes), false);
+
+                assertThat(
+                        Arrays.toString(pattern) + " useDefaultExcludes=" + useDefaultExcludes,
+                        visited,
+                        is(scanWithAnt(pattern[0], pattern[1], useDefaultExcludes)));
+            }
+        }
+    }
+
+    @Test
+    void testSymlinksAreVisitedAfterRealFiles() throws IOException {
+        List<String> visited = scan(new SymlinkSafeDirScanner("**/*", null, true), true);
+
+        assertThat(
+                visited,
+                contains(
+                        equalTo("a.txt"),
+                        equalTo("b.log"),
+                        equalTo("node_modules/module/index.js"),
+                        equalTo("src/Main.java"),
+                        equalTo("src/main/Other.java"),
+                        equalTo("src/main/notes.txt"),
+                        equalTo("node_modules/.bin/module -> ../module/index.js"),
+                        equalTo("outside -> /tmp")));
+    }
+
+    @Test
+    void testSymlinksAreMatchedAgainstPatterns() throws IOException {
+        List<String> visited = scan(new SymlinkSafeDirScanner("node_modules/**", "**/*.js", false), true);
+
+        assertThat(visited, contains("node_modules/.bin/module -> ../module/index.js"));
+    }
+
+    @Test
+    void testUnreadableDirectoriesAreSkipped() throws IOException {
+        write("unreadable/secret.txt");
+        Path unreadable = dir.resolve("unreadable");
+        Files.setPosixFilePermissions(unreadable, Set.of());
+        try {
+            assumeFalse(Files.isReadable(unreadable), "directory is still readable, e.g. when running as root");
+
+            List<String> visited = scan(new SymlinkSafeDirScanner("**/*", null, true), false);
+
+            assertThat(
+                    visited,
+                    contains(
+                            "a.txt",
+                            "b.log",
+                            "node_modules/module/index.js",
+                            "src/Main.java",
+                            "src/main/Other.java",
+                            "src/main/notes.txt"));
+        } finally {
+            Files.setPosixFilePermissions(unreadable, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    private void write(String relativePath) throws IOException {
+        Path file = dir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, relativePath);
+    }
+
+    private List<String> scan(SymlinkSafeDirScanner scanner, boolean understandsSymlink) throws IOException {
+        List<String> visited = new ArrayList<>();
+        scanner.scan(dir.toFile(), new FileVisitor() {
+            @Override
+            public void visit(File f, String relativePath) {
+                visited.add(relativePath);
+            }
+
+            @Override
+            public void visitSymlink(File link, String target, String relativePath) {
+                visited.add(relativePath + " -> " + target);
+            }
+
+            @Override
+            public boolean understandsSymlink() {
+                return understandsSymlink;
+            }
+        });
+        return visited;
+    }
+
+    private List<String> scanWithAnt(String includes, String excludes, boolean useDefaultExcludes) {
+        FileSet fs = Util.createFileSet(dir.toFile(), includes, excludes);
+        fs.setFollowSymlinks(false);
+        fs.setDefaultexcludes(useDefaultExcludes);
+
+        DirectoryScanner ds = fs.getDirectoryScanner(new Project());
+        return Arrays.asList(ds.getIncludedFiles());
+    }
+}
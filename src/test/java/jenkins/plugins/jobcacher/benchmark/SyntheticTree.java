@@ -0,0 +1,199 @@
+package jenkins.plugins.jobcacher.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Deterministic directory trees shaped like the directories that are typically cached, used by the benchmarks.
+ */
+public enum SyntheticTree {
+
+    /**
+     * A local Maven repository: few directories per artifact holding an already compressed jar, a pom and checksums.
+     */
+    MAVEN_REPOSITORY {
+        @Override
+        void populate(Path root, Random random) throws IOException {
+            for (int group = 0; group < 20; group++) {
+                for (int artifact = 0; artifact < 10; artifact++) {
+                    String name = "artifact" + artifact;
+                    Path dir = root.resolve("org/example/group" + group + "/" + name + "/1." + artifact);
+                    writeBinary(
+                            dir.resolve(name + "-1." + artifact + ".jar"),
+                            random,
+                            8 * 1024 + random.nextInt(56 * 1024));
+                    writeText(dir.resolve(name + "-1." + artifact + ".pom"), random, 2 * 1024);
+                    writeText(dir.resolve(name + "-1." + artifact + ".jar.sha1"), random, 40);
+                    writeText(dir.resolve(name + "-1." + artifact + ".pom.sha1"), random, 40);
+                    writeText(dir.resolve("_remote.repositories"), random, 200);
+                }
+            }
+        }
+    },
+
+    /**
+     * A {@code node_modules} directory: many small and compressible files in nested packages and {@code .bin}
+     * symlinks.
+     */
+    NODE_MODULES {
+        @Override
+        void populate(Path root, Random random) throws IOException {
+            Path bin = Files.createDirectories(root.resolve("node_modules/.bin"));
+            for (int module = 0; module < 300; module++) {
+                Path dir = root.resolve("node_modules/module" + module);
+                if (module % 10 == 9) {
+                    dir = root.resolve("node_modules/module" + (module - 1) + "/node_modules/module" + module);
+                }
+                writeText(dir.resolve("package.json"), random, 600);
+                writeText(dir.resolve("README.md"), random, 1024 + random.nextInt(4 * 1024));
+                for (int file = 0; file < 5 + random.nextInt(6); file++) {
+                    writeText(dir.resolve("lib/file" + file + ".js"), random, 1024 + random.nextInt(7 * 1024));
+                }
+                if (module % 5 == 0) {
+                    Files.createSymbolicLink(
+                            bin.resolve("module" + module), bin.relativize(dir.resolve("lib/file0.js")));
+                }
+            }
+        }
+    },
+
+    /**
+     * The output of a build: class files that compress moderately well, a few jars and reports.
+     */
+    BUILD_OUTPUT {
+        @Override
+        void populate(Path root, Random random) throws IOException {
+            for (int module = 0; module < 5; module++) {
+                Path target = root.resolve("module" + module + "/target");
+                for (int pkg = 0; pkg < 10; pkg++) {
+                    for (int type = 0; type < 20; type++) {
+                        Path file = target.resolve("classes/com/example/pkg" + pkg + "/Type" + type + ".class");
+                        Files.createDirectories(file.getParent());
+                        byte[] content = new byte[2 * 1024 + random.nextInt(4 * 1024)];
+                        byte[] text = text(random, content.length / 2);
+                        random.nextBytes(content);
+                        System.arraycopy(text, 0, content, 0, text.length);
+                        Files.write(file, content);
+                    }
+                }
+                writeBinary(target.resolve("module" + module + ".jar"), random, 512 * 1024);
+                writeText(target.resolve("surefire-reports/TEST-module" + module + ".xml"), random, 64 * 1024);
+            }
+        }
+    },
+
+    /**
+     * A deeply nested tree of small files, with symlinks to files and directories including one loop back to the root.
+     */
+    DEEP_TREE {
+        @Override
+        void populate(Path root, Random random) throws IOException {
+            populateDeep(root, random, 0);
+            Files.createSymbolicLink(root.resolve("loop"), Path.of("."));
+        }
+
+        private void populateDeep(Path dir, Random random, int depth) throws IOException {
+            for (int file = 0; file < 4; file++) {
+                writeText(dir.resolve("file" + file + FILE_NAMES[random.nextInt(FILE_NAMES.length)]), random, 64);
+            }
+            writeText(dir.resolve(depth % 2 == 0 ? "pom.xml" : "package.json"), random, 64);
+            if (depth == 10) {
+                return;
+            }
+
+            for (String child : new String[] {"a", "b"}) {
+                populateDeep(
+                        dir.resolve(DIRECTORY_NAMES[random.nextInt(DIRECTORY_NAMES.length)] + child),
+                        random,
+                        depth + 1);
+            }
+            Files.createSymbolicLink(dir.resolve("link"), Path.of(depth % 2 == 0 ? "pom.xml" : "package.json"));
+        }
+    },
+
+    /**
+     * A shallow tree with a few very large directories of small files and symlinks between them.
+     */
+    WIDE_TREE {
+        @Override
+        void populate(Path root, Random random) throws IOException {
+            for (int dir = 0; dir < 10; dir++) {
+                Path parent = root.resolve(DIRECTORY_NAMES[dir % DIRECTORY_NAMES.length] + dir);
+                for (int file = 0; file < 2000; file++) {
+                    writeText(
+                            parent.resolve("file" + file + FILE_NAMES[random.nextInt(FILE_NAMES.length)]), random, 64);
+                }
+                writeText(parent.resolve("pom.xml"), random, 64);
+                Files.createSymbolicLink(root.resolve("link" + dir), root.relativize(parent));
+            }
+        }
+    };
+
+    private static final String[] DIRECTORY_NAMES = {"src", "lib", "target", "node_modules", "tmp", "main", "dist"};
+
+    private static final String[] FILE_NAMES = {".java", ".js", ".class", ".txt", ".tmp", ".json"};
+
+    private static final String[] WORDS = {
+        "cache", "build", "function", "return", "const", "import", "export", "module", "value", "node", "jenkins",
+        "project", "version", "dependency", "artifact", "=", "{", "}", "(", ")", ";", "\n"
+    };
+
+    /**
+     * Creates the tree in a new directory, the same seed always creates the same tree.
+     *
+     * @param parent The directory in which the tree is created
+     * @return The root of the tree
+     */
+    public Path create(Path parent) throws IOException {
+        Path root = Files.createDirectories(parent.resolve(name().toLowerCase()));
+        populate(root, new Random(ordinal()));
+        return root;
+    }
+
+    /**
+     * Writes files of equal size that compress moderately well, spread over directories of at most 100 files.
+     *
+     * @param dir The directory in which the files are written
+     * @param count The number of files
+     * @param totalSize The total size of all files in bytes
+     */
+    public static void writeFiles(Path dir, int count, long totalSize) throws IOException {
+        Random random = new Random(count);
+        int size = (int) (totalSize / count);
+        for (int file = 0; file < count; file++) {
+            Path path = dir.resolve("dir" + file / 100 + "/file" + file);
+            Files.createDirectories(path.getParent());
+            byte[] content = new byte[size];
+            byte[] text = text(random, size / 2);
+            random.nextBytes(content);
+            System.arraycopy(text, 0, content, 0, text.length);
+            Files.write(path, content);
+        }
+    }
+
+    abstract void populate(Path root, Random random) throws IOException;
+
+    static void writeText(Path file, Random random, int size) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, text(random, size));
+    }
+
+    static void writeBinary(Path file, Random random, int size) throws IOException {
+        Files.createDirectories(file.getParent());
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        Files.write(file, content);
+    }
+
+    private static byte[] text(Random random, int size) {
+        StringBuilder text = new StringBuilder(size + 16);
+        while (text.length() < size) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        text.setLength(size);
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
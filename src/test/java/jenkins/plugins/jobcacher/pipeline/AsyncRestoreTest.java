@@ -0,0 +1,35 @@
+package jenkins.plugins.jobcacher.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+@WithJenkins
+class AsyncRestoreTest {
+
+    @Test
+    void testCancelInterruptsRunningRestore(JenkinsRule jenkins) throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AsyncRestore restore = AsyncRestore.start(() -> {
+            started.countDown();
+            Thread.sleep(TimeUnit.MINUTES.toMillis(10));
+            return List.of();
+        });
+
+        try {
+            started.await();
+            restore.cancel();
+
+            // returns as soon as the interrupted restore has finished instead of after the sleep
+            restore.awaitQuietly();
+            assertThrows(InterruptedException.class, restore::await);
+        } finally {
+            restore.remove();
+        }
+    }
+}